@@ -21,12 +21,14 @@ package io.wcm.caconfig.extensions.contextpath.impl;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Dictionary;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -34,12 +36,21 @@ import java.util.regex.PatternSyntaxException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.apache.sling.caconfig.resource.spi.ContextPathStrategy;
 import org.apache.sling.caconfig.resource.spi.ContextResource;
+import org.apache.sling.commons.metrics.MetricsService;
 import org.jetbrains.annotations.NotNull;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
@@ -89,11 +100,20 @@ public class AbsoluteParentContextPathStrategy implements ContextPathStrategy {
             required = true)
     String[] templatePathsBlacklist();
 
+    @AttributeDefinition(name = "Template blacklist cache size",
+        description = "Maximum number of context paths below /content for which the template blacklist verdict is cached. "
+            + "The cache is invalidated via resource change events. 0 disables the cache.")
+    int templateBlacklistCacheMaxSize() default 1000;
+
     @AttributeDefinition(name = "Config path patterns",
         description = "Expression to derive the config path from the context path. Regex group references like $1 can be used.",
         required = true)
     String[] configPathPatterns() default "/conf$1";
 
+    @AttributeDefinition(name = "Config reference cache size",
+        description = "Maximum number of context paths for which the derived config references are cached. 0 disables the cache.")
+    int configRefCacheMaxSize() default 1000;
+
     @AttributeDefinition(name = "Service Ranking",
         description = "Priority of context path strategy (higher = higher priority).")
     int service_ranking() default 2000;
@@ -102,34 +122,45 @@ public class AbsoluteParentContextPathStrategy implements ContextPathStrategy {
 
   }
 
-  private Set<Integer> levels;
+  private BitSet levels;
   private int unlimitedLevelStart;
   private boolean unlimited;
   private Pattern contextPathRegex;
+  private String contextPathPrefix;
   private Pattern contextPathBlacklistRegex;
-  private String[] configPathPatterns;
+  private List<ConfigPathTemplate> configPathTemplates;
   private int serviceRanking;
   private Set<String> templatePathsBlacklist;
+  private TemplateBlacklistCache templateBlacklistCache;
+  private ServiceRegistration<ResourceChangeListener> templateBlacklistCacheRegistration;
+  private ConfigRefCache configRefCache;
+
+  private static final Pattern LITERAL_PREFIX_PATTERN = Pattern.compile("\\^(/[A-Za-z0-9_:/-]*)");
+  private static final String REGEX_QUANTIFIER_CHARS = "*+?{";
 
   private static final Logger log = LoggerFactory.getLogger(AbsoluteParentContextPathStrategy.class);
 
   @Reference
   private PageManagerFactory pageManagerFactory;
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+  private MetricsService metricsService;
 
   @Activate
-  void activate(Config config) {
-    levels = new TreeSet<>();
+  void activate(BundleContext bundleContext, Config config) {
+    levels = new BitSet();
     if (config.levels() != null) {
       for (int level : config.levels()) {
-        levels.add(level);
-        if (level >= unlimitedLevelStart) {
-          unlimitedLevelStart = level + 1;
+        // negative levels never match a context path
+        if (level >= 0) {
+          levels.set(level);
         }
       }
     }
+    unlimitedLevelStart = levels.length();
     unlimited = config.unlimited();
     try {
       contextPathRegex = Pattern.compile(config.contextPathRegex());
+      contextPathPrefix = getLiteralPrefix(contextPathRegex);
     }
     catch (PatternSyntaxException ex) {
       log.warn("Invalid context path regex: {}", config.contextPathRegex(), ex);
@@ -142,10 +173,29 @@ public class AbsoluteParentContextPathStrategy implements ContextPathStrategy {
         log.warn("Invalid context path blacklist regex: {}", config.contextPathBlacklistRegex(), ex);
       }
     }
-    configPathPatterns = config.configPathPatterns();
+    configPathTemplates = ConfigPathTemplate.compileAll(config.configPathPatterns(), contextPathRegex);
     serviceRanking = config.service_ranking();
+    configRefCache = config.configRefCacheMaxSize() > 0 ? new ConfigRefCache(config.configRefCacheMaxSize()) : null;
     // make sure this is never null (only DS 1.4 initializes them always to empty arrays)
     templatePathsBlacklist = config.templatePathsBlacklist() != null ? new HashSet<>(Arrays.asList(config.templatePathsBlacklist())) : Collections.emptySet();
+
+    if (!templatePathsBlacklist.isEmpty() && config.templateBlacklistCacheMaxSize() > 0) {
+      templateBlacklistCache = new TemplateBlacklistCache(config.templateBlacklistCacheMaxSize(),
+          metricsService != null ? metricsService : MetricsService.NOOP);
+      Dictionary<String, Object> props = new Hashtable<>();
+      props.put(ResourceChangeListener.PATHS, TemplateBlacklistCache.OBSERVED_PATHS);
+      props.put(ResourceChangeListener.CHANGES, new String[] { ChangeType.ADDED.name(), ChangeType.CHANGED.name(), ChangeType.REMOVED.name() });
+      templateBlacklistCacheRegistration = bundleContext.registerService(ResourceChangeListener.class, templateBlacklistCache, props);
+    }
+  }
+
+  @Deactivate
+  void deactivate() {
+    if (templateBlacklistCacheRegistration != null) {
+      templateBlacklistCacheRegistration.unregister();
+      templateBlacklistCacheRegistration = null;
+    }
+    templateBlacklistCache = null;
   }
 
   @Override
@@ -155,31 +205,41 @@ public class AbsoluteParentContextPathStrategy implements ContextPathStrategy {
     }
 
     ResourceResolver resourceResolver = resource.getResourceResolver();
-    PageManager pageManager = pageManagerFactory.getPageManager(resource.getResourceResolver());
-    if (pageManager == null) {
-      throw new RuntimeException("No page manager.");
+    String path = resource.getPath();
+    if (!isInContextPathPrefix(path, resourceResolver)) {
+      return Collections.emptyIterator();
     }
     List<ContextResource> contextResources = new ArrayList<>();
 
-    int maxLevel = Path.getAbsoluteLevel(resource.getPath(), resourceResolver);
-    for (int level = 0; level <= maxLevel; level++) {
-      if (levels.contains(level) || (unlimited && level >= unlimitedLevelStart)) {
-        String contextPath = Path.getAbsoluteParent(resource.getPath(), level, resourceResolver);
-        if (StringUtils.isNotEmpty(contextPath)) {
-          Resource contextResource = resource.getResourceResolver().getResource(contextPath);
-          if (contextResource != null) {
-            // first check if resource is blacklisted
-            if (isResourceBelongingToBlacklistedTemplates(contextResource, pageManager)) {
-              log.trace("Resource '{}' is belonging to a page derived from a blacklisted template, skipping level {}", contextPath, level);
-              break;
-            }
-            for (String configPathPattern : configPathPatterns) {
-              String configRef = deriveConfigRef(contextPath, configPathPattern, resourceResolver);
-              if (configRef != null) {
-                contextResources.add(new ContextResource(contextResource, configRef, serviceRanking));
-              }
-            }
-          }
+    int maxLevel = Path.getAbsoluteLevel(path, resourceResolver);
+    int minLevel = levels.nextSetBit(0);
+    if (maxLevel < minLevel) {
+      return Collections.emptyIterator();
+    }
+
+    // resolve resources of all context levels in a single walk up the ancestors of the resource
+    Resource[] levelResources = new Resource[maxLevel + 1];
+    Resource current = resource;
+    for (int level = maxLevel; level >= minLevel; level--) {
+      if (level < maxLevel) {
+        current = current != null ? current.getParent() : resourceResolver.getResource(ResourceUtil.getParent(path, maxLevel - level));
+      }
+      if (current != null && isContextLevel(level) && !ResourceUtil.isNonExistingResource(current)) {
+        levelResources[level] = current;
+      }
+    }
+
+    for (int level = minLevel; level <= maxLevel; level++) {
+      Resource contextResource = levelResources[level];
+      if (contextResource != null) {
+        String contextPath = contextResource.getPath();
+        // first check if resource is blacklisted
+        if (isResourceBelongingToBlacklistedTemplates(contextResource)) {
+          log.trace("Resource '{}' is belonging to a page derived from a blacklisted template, skipping level {}", contextPath, level);
+          break;
+        }
+        for (String configRef : deriveConfigRefs(contextPath, resourceResolver)) {
+          contextResources.add(new ContextResource(contextResource, configRef, serviceRanking));
         }
       }
     }
@@ -188,31 +248,93 @@ public class AbsoluteParentContextPathStrategy implements ContextPathStrategy {
     return contextResources.iterator();
   }
 
+  /**
+   * Checks if the resource path may contain a context path matching the context path expression, without walking
+   * up the ancestors. This allows to skip the lookup for all strategy instances with context path expressions
+   * not matching the current content subtree.
+   */
+  private boolean isInContextPathPrefix(String path, ResourceResolver resourceResolver) {
+    if (contextPathPrefix.isEmpty() || path.startsWith(contextPathPrefix)) {
+      return true;
+    }
+    // context path expression is matched against the original path of version history or launch paths
+    return !StringUtils.equals(Path.getOriginalPath(path, resourceResolver), path);
+  }
+
+  /**
+   * Gets the literal prefix all paths matching the given expression have to start with.
+   * Only a conservative form is supported: the expression has to start with <code>^/</code> followed by plain path
+   * characters, and must not contain any alternation. For all other expressions no prefix is detected.
+   * @param pattern Context path expression
+   * @return Literal prefix or empty string if no literal prefix is detected
+   */
+  static @NotNull String getLiteralPrefix(@NotNull Pattern pattern) {
+    String regex = pattern.pattern();
+    if (pattern.flags() != 0 || regex.indexOf('|') >= 0) {
+      return "";
+    }
+    Matcher matcher = LITERAL_PREFIX_PATTERN.matcher(regex);
+    if (!matcher.lookingAt()) {
+      return "";
+    }
+    String prefix = matcher.group(1);
+    // a quantifier applies to the last literal character
+    if (matcher.end() < regex.length() && REGEX_QUANTIFIER_CHARS.indexOf(regex.charAt(matcher.end())) >= 0) {
+      prefix = prefix.substring(0, prefix.length() - 1);
+    }
+    return prefix;
+  }
+
+  private boolean isContextLevel(int level) {
+    return levels.get(level) || (unlimited && level >= unlimitedLevelStart);
+  }
+
   private boolean isValidConfig() {
     return !levels.isEmpty()
         && contextPathRegex != null
-        && configPathPatterns != null
-        && configPathPatterns.length > 0;
+        && !configPathTemplates.isEmpty();
+  }
+
+  private List<String> deriveConfigRefs(String contextPath, ResourceResolver resourceResolver) {
+    String originalPath = Path.getOriginalPath(contextPath, resourceResolver);
+    // the original path of version history or launch paths depends on the resource resolver, do not cache them
+    if (configRefCache != null && StringUtils.equals(originalPath, contextPath)) {
+      return configRefCache.get(contextPath, path -> deriveConfigRefs(path, path));
+    }
+    return deriveConfigRefs(contextPath, originalPath);
   }
 
-  private String deriveConfigRef(String contextPath, String configPathPattern, ResourceResolver resourceResolver) {
-    Matcher matcher = contextPathRegex.matcher(Path.getOriginalPath(contextPath, resourceResolver));
+  private List<String> deriveConfigRefs(String contextPath, String originalPath) {
+    Matcher matcher = contextPathRegex.matcher(originalPath);
     Matcher blacklistMatcher = null;
     if (contextPathBlacklistRegex != null) {
       blacklistMatcher = contextPathBlacklistRegex.matcher(contextPath);
     }
-    if (matcher.matches() && (blacklistMatcher == null || !blacklistMatcher.matches())) {
-      return matcher.replaceAll(configPathPattern);
+    if (!matcher.matches() || (blacklistMatcher != null && blacklistMatcher.matches())) {
+      return Collections.emptyList();
     }
-    else {
-      return null;
+    List<String> configRefs = new ArrayList<>(configPathTemplates.size());
+    for (ConfigPathTemplate configPathTemplate : configPathTemplates) {
+      configRefs.add(configPathTemplate.apply(matcher, originalPath));
     }
+    return Collections.unmodifiableList(configRefs);
   }
 
-  private boolean isResourceBelongingToBlacklistedTemplates(Resource resource, PageManager pageManager) {
+  private boolean isResourceBelongingToBlacklistedTemplates(Resource resource) {
     if (templatePathsBlacklist.isEmpty()) {
       return false;
     }
+    if (templateBlacklistCache != null) {
+      return templateBlacklistCache.isBlacklisted(resource.getPath(), () -> isPageBasedOnBlacklistedTemplate(resource));
+    }
+    return isPageBasedOnBlacklistedTemplate(resource);
+  }
+
+  private boolean isPageBasedOnBlacklistedTemplate(Resource resource) {
+    PageManager pageManager = pageManagerFactory.getPageManager(resource.getResourceResolver());
+    if (pageManager == null) {
+      throw new RuntimeException("No page manager.");
+    }
     Page page = pageManager.getContainingPage(resource);
     // if no containing page could be determined, we don't blacklist
     if (page == null) {
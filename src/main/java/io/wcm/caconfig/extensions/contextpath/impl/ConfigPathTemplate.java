@@ -0,0 +1,247 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.contextpath.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Config path pattern (e.g. <code>/conf$1</code>) compiled once against the context path expression.
+ * <p>
+ * The pattern is parsed into a list of literals and group references with the same syntax as supported by
+ * {@link Matcher#replaceAll(String)}, and invalid group references are detected when compiling.
+ * Applying the template produces the same result as {@link Matcher#replaceAll(String)}
+ * without parsing the replacement string again.
+ * </p>
+ */
+final class ConfigPathTemplate {
+
+  private final String template;
+  private final Segment[] segments;
+
+  private static final Logger log = LoggerFactory.getLogger(ConfigPathTemplate.class);
+
+  private ConfigPathTemplate(String template, Segment[] segments) {
+    this.template = template;
+    this.segments = segments;
+  }
+
+  /**
+   * Compiles the given config path patterns, invalid patterns are logged and skipped.
+   * @param templates Config path patterns
+   * @param contextPathRegex Context path expression the group references refer to
+   * @return Compiled templates
+   */
+  static @NotNull List<ConfigPathTemplate> compileAll(@Nullable String[] templates, @Nullable Pattern contextPathRegex) {
+    List<ConfigPathTemplate> result = new ArrayList<>();
+    if (templates == null || contextPathRegex == null) {
+      return result;
+    }
+    for (String template : templates) {
+      try {
+        result.add(compile(template, contextPathRegex));
+      }
+      catch (IllegalArgumentException ex) {
+        log.warn("Invalid config path pattern '{}' for context path regex '{}': {}", template, contextPathRegex, ex.getMessage());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Compiles the given config path pattern.
+   * @param template Config path pattern with regex group references like <code>$1</code> or <code>${name}</code>
+   * @param contextPathRegex Context path expression the group references refer to
+   * @return Compiled template
+   * @throws IllegalArgumentException if the pattern contains an invalid escape sequence or group reference
+   */
+  static @NotNull ConfigPathTemplate compile(@NotNull String template, @NotNull Pattern contextPathRegex) {
+    int groupCount = contextPathRegex.matcher("").groupCount();
+    List<Segment> segments = new ArrayList<>();
+    StringBuilder literal = new StringBuilder();
+    int cursor = 0;
+    while (cursor < template.length()) {
+      char nextChar = template.charAt(cursor);
+      if (nextChar == '\\') {
+        cursor++;
+        if (cursor == template.length()) {
+          throw new IllegalArgumentException("Character to be escaped is missing: " + template);
+        }
+        literal.append(template.charAt(cursor));
+        cursor++;
+      }
+      else if (nextChar == '$') {
+        cursor++;
+        if (cursor == template.length()) {
+          throw new IllegalArgumentException("Illegal group reference, group index is missing: " + template);
+        }
+        Segment groupRef;
+        if (template.charAt(cursor) == '{') {
+          int end = template.indexOf('}', cursor);
+          if (end < 0) {
+            throw new IllegalArgumentException("Named capturing group is missing trailing '}': " + template);
+          }
+          String name = template.substring(cursor + 1, end);
+          if (!isValidGroupName(name) || !contextPathRegex.pattern().contains("(?<" + name + ">")) {
+            throw new IllegalArgumentException("No group with name {" + name + "}: " + template);
+          }
+          groupRef = new NamedGroupRef(name);
+          cursor = end + 1;
+        }
+        else {
+          int refNum = template.charAt(cursor) - '0';
+          if (refNum < 0 || refNum > 9) {
+            throw new IllegalArgumentException("Illegal group reference: " + template);
+          }
+          cursor++;
+          // capture the largest legal group number, same as Matcher#appendReplacement
+          while (cursor < template.length()) {
+            int nextDigit = template.charAt(cursor) - '0';
+            if (nextDigit < 0 || nextDigit > 9) {
+              break;
+            }
+            int newRefNum = refNum * 10 + nextDigit;
+            if (groupCount < newRefNum) {
+              break;
+            }
+            refNum = newRefNum;
+            cursor++;
+          }
+          if (refNum > groupCount) {
+            throw new IllegalArgumentException("No group " + refNum + ": " + template);
+          }
+          groupRef = new GroupRef(refNum);
+        }
+        if (literal.length() > 0) {
+          segments.add(new Literal(literal.toString()));
+          literal.setLength(0);
+        }
+        segments.add(groupRef);
+      }
+      else {
+        literal.append(nextChar);
+        cursor++;
+      }
+    }
+    if (literal.length() > 0) {
+      segments.add(new Literal(literal.toString()));
+    }
+    return new ConfigPathTemplate(template, segments.toArray(new Segment[0]));
+  }
+
+  private static boolean isValidGroupName(String name) {
+    if (name.isEmpty() || !isAsciiLetter(name.charAt(0))) {
+      return false;
+    }
+    for (int i = 1; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (!isAsciiLetter(c) && !(c >= '0' && c <= '9')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isAsciiLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  /**
+   * Replaces every match of the context path expression in the given input with this template.
+   * @param matcher Matcher of the context path expression for the input
+   * @param input Context path the matcher was created for
+   * @return Config path
+   */
+  @NotNull
+  String apply(@NotNull Matcher matcher, @NotNull String input) {
+    matcher.reset();
+    if (!matcher.find()) {
+      return input;
+    }
+    StringBuilder result = new StringBuilder(input.length() + template.length());
+    int lastEnd = 0;
+    do {
+      result.append(input, lastEnd, matcher.start());
+      for (Segment segment : segments) {
+        segment.appendTo(result, matcher);
+      }
+      lastEnd = matcher.end();
+    }
+    while (matcher.find());
+    result.append(input, lastEnd, input.length());
+    return result.toString();
+  }
+
+  @Override
+  public String toString() {
+    return template;
+  }
+
+  private interface Segment {
+    void appendTo(StringBuilder result, Matcher matcher);
+  }
+
+  private static final class Literal implements Segment {
+    private final String value;
+    Literal(String value) {
+      this.value = value;
+    }
+    @Override
+    public void appendTo(StringBuilder result, Matcher matcher) {
+      result.append(value);
+    }
+  }
+
+  private static final class GroupRef implements Segment {
+    private final int group;
+    GroupRef(int group) {
+      this.group = group;
+    }
+    @Override
+    public void appendTo(StringBuilder result, Matcher matcher) {
+      String value = matcher.group(group);
+      if (value != null) {
+        result.append(value);
+      }
+    }
+  }
+
+  private static final class NamedGroupRef implements Segment {
+    private final String name;
+    NamedGroupRef(String name) {
+      this.name = name;
+    }
+    @Override
+    public void appendTo(StringBuilder result, Matcher matcher) {
+      String value = matcher.group(name);
+      if (value != null) {
+        result.append(value);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.contextpath.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Caches the config references derived from context paths by the context path strategies.
+ * <p>
+ * The derived config references depend only on the context path and the configuration of the strategy,
+ * so the cache is never invalidated. A new cache is created on each (re)activation of the strategy.
+ * </p>
+ * <p>
+ * Lookups are lock-free, they only record the access time of the entry. When the cache exceeds its maximum size,
+ * the least recently used entries are evicted by a single thread, while other threads continue reading.
+ * </p>
+ */
+final class ConfigRefCache {
+
+  private final int maxSize;
+  private final int evictToSize;
+  private final Map<String, Entry> configRefs = new ConcurrentHashMap<>();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  ConfigRefCache(int maxSize) {
+    this.maxSize = maxSize;
+    // evict some more entries at once to not sort the entries on each insert
+    this.evictToSize = Math.max(maxSize - maxSize / 10, 1);
+  }
+
+  /**
+   * Gets the cached config references for the given context path, or derives and caches them.
+   * @param contextPath Context path
+   * @param deriveConfigRefs Derives the config references for a context path
+   * @return Config references
+   */
+  @NotNull
+  List<String> get(@NotNull String contextPath, @NotNull Function<String, List<String>> deriveConfigRefs) {
+    Entry entry = configRefs.get(contextPath);
+    if (entry != null) {
+      entry.lastAccess = System.nanoTime();
+      return entry.value;
+    }
+    List<String> result = deriveConfigRefs.apply(contextPath);
+    configRefs.put(contextPath, new Entry(result));
+    if (configRefs.size() > maxSize) {
+      evict();
+    }
+    return result;
+  }
+
+  private void evict() {
+    // skip if another thread is already evicting
+    if (!evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      int evictCount = configRefs.size() - evictToSize;
+      if (evictCount <= 0) {
+        return;
+      }
+      // snapshot access times, as they may change concurrently while sorting
+      List<EvictionCandidate> candidates = new ArrayList<>();
+      configRefs.forEach((contextPath, entry) -> candidates.add(new EvictionCandidate(contextPath, entry)));
+      candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+      for (int i = 0; i < evictCount && i < candidates.size(); i++) {
+        configRefs.remove(candidates.get(i).contextPath, candidates.get(i).entry);
+      }
+    }
+    finally {
+      evictionLock.unlock();
+    }
+  }
+
+  int size() {
+    return configRefs.size();
+  }
+
+  private static final class Entry {
+
+    private final List<String> value;
+    private volatile long lastAccess = System.nanoTime();
+
+    Entry(List<String> value) {
+      this.value = value;
+    }
+
+  }
+
+  private static final class EvictionCandidate {
+
+    private final String contextPath;
+    private final Entry entry;
+    private final long lastAccess;
+
+    EvictionCandidate(String contextPath, Entry entry) {
+      this.contextPath = contextPath;
+      this.entry = entry;
+      this.lastAccess = entry.lastAccess;
+    }
+
+  }
+
+}
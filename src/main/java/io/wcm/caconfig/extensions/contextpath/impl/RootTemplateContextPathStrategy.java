@@ -28,6 +28,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.caconfig.resource.spi.ContextPathStrategy;
@@ -93,6 +94,10 @@ public class RootTemplateContextPathStrategy implements ContextPathStrategy {
         required = true)
     String[] configPathPatterns() default "/conf$1";
 
+    @AttributeDefinition(name = "Config reference cache size",
+        description = "Maximum number of context paths for which the derived config references are cached. 0 disables the cache.")
+    int configRefCacheMaxSize() default 1000;
+
     @AttributeDefinition(name = "Service Ranking",
         description = "Priority of context path strategy (higher = higher priority).")
     int service_ranking() default 2000;
@@ -106,8 +111,9 @@ public class RootTemplateContextPathStrategy implements ContextPathStrategy {
   private int minLevel;
   private int maxLevel;
   private Pattern contextPathRegex;
-  private String[] configPathPatterns;
+  private List<ConfigPathTemplate> configPathTemplates;
   private int serviceRanking;
+  private ConfigRefCache configRefCache;
 
   private static final Logger log = LoggerFactory.getLogger(RootTemplateContextPathStrategy.class);
 
@@ -126,8 +132,9 @@ public class RootTemplateContextPathStrategy implements ContextPathStrategy {
     catch (PatternSyntaxException ex) {
       log.warn("Invalid context path regex: {}", config.contextPathRegex(), ex);
     }
-    configPathPatterns = config.configPathPatterns();
+    configPathTemplates = ConfigPathTemplate.compileAll(config.configPathPatterns(), contextPathRegex);
     serviceRanking = config.service_ranking();
+    configRefCache = config.configRefCacheMaxSize() > 0 ? new ConfigRefCache(config.configRefCacheMaxSize()) : null;
   }
 
   @Override
@@ -158,11 +165,8 @@ public class RootTemplateContextPathStrategy implements ContextPathStrategy {
     for (String contextPath : contextPathCandidats) {
       Resource contextResource = resource.getResourceResolver().getResource(contextPath);
       if (contextResource != null) {
-        for (String configPathPattern : configPathPatterns) {
-          String configRef = deriveConfigRef(contextPath, configPathPattern, resourceResolver);
-          if (configRef != null) {
-            contextResources.add(new ContextResource(contextResource, configRef, serviceRanking));
-          }
+        for (String configRef : deriveConfigRefs(contextPath, resourceResolver)) {
+          contextResources.add(new ContextResource(contextResource, configRef, serviceRanking));
         }
       }
     }
@@ -173,8 +177,7 @@ public class RootTemplateContextPathStrategy implements ContextPathStrategy {
   private boolean isValidConfig() {
     return !templatePaths.isEmpty()
         && contextPathRegex != null
-        && configPathPatterns != null
-        && configPathPatterns.length > 0;
+        && !configPathTemplates.isEmpty();
   }
 
   private List<String> getContextPathCandidatesMatchInnermost(Page page, ResourceResolver resourceResolver) {
@@ -212,14 +215,25 @@ public class RootTemplateContextPathStrategy implements ContextPathStrategy {
     return candidates;
   }
 
-  private String deriveConfigRef(String contextPath, String configPathPattern, ResourceResolver resourceResolver) {
-    Matcher matcher = contextPathRegex.matcher(Path.getOriginalPath(contextPath, resourceResolver));
-    if (matcher.matches()) {
-      return matcher.replaceAll(configPathPattern);
+  private List<String> deriveConfigRefs(String contextPath, ResourceResolver resourceResolver) {
+    String originalPath = Path.getOriginalPath(contextPath, resourceResolver);
+    // the original path of version history or launch paths depends on the resource resolver, do not cache them
+    if (configRefCache != null && StringUtils.equals(originalPath, contextPath)) {
+      return configRefCache.get(contextPath, this::deriveConfigRefs);
     }
-    else {
-      return null;
+    return deriveConfigRefs(originalPath);
+  }
+
+  private List<String> deriveConfigRefs(String originalPath) {
+    Matcher matcher = contextPathRegex.matcher(originalPath);
+    if (!matcher.matches()) {
+      return Collections.emptyList();
+    }
+    List<String> configRefs = new ArrayList<>(configPathTemplates.size());
+    for (ConfigPathTemplate configPathTemplate : configPathTemplates) {
+      configRefs.add(configPathTemplate.apply(matcher, originalPath));
     }
+    return Collections.unmodifiableList(configRefs);
   }
 
 }
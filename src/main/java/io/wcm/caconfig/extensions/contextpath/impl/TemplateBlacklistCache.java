@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.contextpath.impl;
+
+import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
+import static io.wcm.caconfig.extensions.impl.PathUtil.isAtOrBelow;
+import static io.wcm.caconfig.extensions.impl.PathUtil.isAtOrBelowAny;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.wcm.caconfig.extensions.impl.PathCache;
+
+/**
+ * Caches for context resource paths if they belong to a page based on a blacklisted template
+ * in {@link AbsoluteParentContextPathStrategy}.
+ * <p>
+ * Only paths below the observed paths are cached. If a page content resource is changed, or a page or its content
+ * resource is added or removed, the entries for the page and all resources below it are invalidated via resource
+ * change events (including external events from other cluster nodes). Changes of other resources inside the page
+ * content do not affect the template and are ignored.
+ * </p>
+ */
+final class TemplateBlacklistCache implements ResourceChangeListener, ExternalResourceChangeListener {
+
+  static final String[] OBSERVED_PATHS = { "/content" };
+
+  private static final String METRICS_PREFIX = AbsoluteParentContextPathStrategy.class.getName() + ".templateBlacklistCache";
+  private static final String JCR_CONTENT_SUFFIX = "/" + JCR_CONTENT;
+
+  private final PathCache<Boolean> verdicts;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final Counter hitCounter;
+  private final Counter missCounter;
+
+  private static final Logger log = LoggerFactory.getLogger(TemplateBlacklistCache.class);
+
+  TemplateBlacklistCache(int maxSize, @NotNull MetricsService metricsService) {
+    this.verdicts = new PathCache<>(maxSize);
+    this.hitCounter = metricsService.counter(METRICS_PREFIX + ".hits");
+    this.missCounter = metricsService.counter(METRICS_PREFIX + ".misses");
+  }
+
+  /**
+   * Gets the cached verdict for the given context resource path, or computes and caches it.
+   * @param path Context resource path
+   * @param blacklistedCheck Checks if the containing page of the resource is based on a blacklisted template
+   * @return true if the resource belongs to a page based on a blacklisted template
+   */
+  boolean isBlacklisted(@NotNull String path, @NotNull BooleanSupplier blacklistedCheck) {
+    if (!isAtOrBelowAny(path, OBSERVED_PATHS)) {
+      return blacklistedCheck.getAsBoolean();
+    }
+    long readGeneration = verdicts.getGeneration();
+    Boolean cachedVerdict = verdicts.get(path);
+    if (cachedVerdict != null) {
+      hitCount.incrementAndGet();
+      hitCounter.increment();
+      return cachedVerdict;
+    }
+    missCount.incrementAndGet();
+    missCounter.increment();
+    boolean verdict = blacklistedCheck.getAsBoolean();
+    // not stored if cache was invalidated meanwhile
+    verdicts.put(path, verdict, readGeneration);
+    return verdict;
+  }
+
+  @Override
+  public void onChange(@NotNull List<ResourceChange> changes) {
+    // sort paths to invalidate subtrees only once
+    Set<String> pagePaths = new TreeSet<>();
+    for (ResourceChange change : changes) {
+      String pagePath = getAffectedPagePath(change);
+      if (pagePath != null) {
+        pagePaths.add(pagePath);
+      }
+    }
+    String lastPagePath = null;
+    for (String pagePath : pagePaths) {
+      if (lastPagePath == null || !isAtOrBelow(pagePath, lastPagePath)) {
+        verdicts.invalidateAtOrBelow(pagePath);
+        lastPagePath = pagePath;
+      }
+    }
+    if (!pagePaths.isEmpty()) {
+      log.trace("Invalidated template blacklist cache for {}", pagePaths);
+    }
+  }
+
+  /**
+   * @return Path of the page whose template or existence may be affected by the change, or null if not affected
+   */
+  private static @Nullable String getAffectedPagePath(ResourceChange change) {
+    String path = change.getPath();
+    // template is stored in page content resource
+    if (StringUtils.endsWith(path, JCR_CONTENT_SUFFIX)) {
+      return StringUtils.removeEnd(path, JCR_CONTENT_SUFFIX);
+    }
+    // pages or other resources outside page content added or removed
+    if (change.getType() != ChangeType.CHANGED && !StringUtils.contains(path, JCR_CONTENT_SUFFIX + "/")) {
+      return path;
+    }
+    return null;
+  }
+
+  long getHitCount() {
+    return hitCount.get();
+  }
+
+  long getMissCount() {
+    return missCount.get();
+  }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.impl;
+
+import static io.wcm.caconfig.extensions.impl.PathUtil.isAtOrBelow;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Cache with resource paths as keys. Lookups do not require a lock, and all entries of a subtree can be invalidated
+ * at once via a range removal without iterating over all entries.
+ * <p>
+ * Values read from the repository are only stored if the cache was not invalidated since the read started, so a
+ * value read from an outdated repository state cannot outlive the invalidation. If the maximum size is exceeded,
+ * the least recently used entries are evicted.
+ * </p>
+ * @param <V> Value type
+ */
+public final class PathCache<V> {
+
+  private final ConcurrentNavigableMap<String, Entry<V>> entries = new ConcurrentSkipListMap<>();
+  private final int maxSize;
+  private final AtomicInteger approximateSize = new AtomicInteger();
+  private final AtomicLong generation;
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  /**
+   * @param maxSize Maximum number of entries, 0 for unbounded
+   */
+  public PathCache(int maxSize) {
+    this(maxSize, new AtomicLong());
+  }
+
+  /**
+   * @param maxSize Maximum number of entries, 0 for unbounded
+   * @param generation Generation shared with other caches that are invalidated together
+   */
+  public PathCache(int maxSize, @NotNull AtomicLong generation) {
+    this.maxSize = maxSize;
+    this.generation = generation;
+  }
+
+  /**
+   * @return Current generation, to be read before reading the value from the repository
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+
+  public @Nullable V get(@NotNull String path) {
+    Entry<V> entry = entries.get(path);
+    if (entry == null) {
+      return null;
+    }
+    entry.lastAccess = System.nanoTime();
+    return entry.value;
+  }
+
+  /**
+   * Stores a value read from the repository.
+   * @param path Path
+   * @param value Value
+   * @param readGeneration Generation read before the value was read from the repository
+   */
+  public void put(@NotNull String path, @NotNull V value, long readGeneration) {
+    if (generation.get() != readGeneration) {
+      return;
+    }
+    Entry<V> entry = put(path, new Entry<>(value));
+    // invalidated concurrently after the check above
+    if (generation.get() != readGeneration) {
+      entries.remove(path, entry);
+    }
+  }
+
+  /**
+   * Stores a value unconditionally, e.g. when updating the cache in reaction to a change.
+   * @param path Path
+   * @param value Value
+   */
+  public void put(@NotNull String path, @NotNull V value) {
+    put(path, new Entry<>(value));
+  }
+
+  private Entry<V> put(String path, Entry<V> entry) {
+    if (entries.put(path, entry) == null && maxSize > 0 && approximateSize.incrementAndGet() > maxSize) {
+      evict();
+    }
+    return entry;
+  }
+
+  /**
+   * Removes the entry for the given path.
+   * @param path Path
+   */
+  public void invalidate(@NotNull String path) {
+    generation.incrementAndGet();
+    entries.remove(path);
+  }
+
+  /**
+   * Removes the entry for the given path and all entries below.
+   * @param path Path
+   */
+  public void invalidateAtOrBelow(@NotNull String path) {
+    generation.incrementAndGet();
+    if (StringUtils.equals(path, "/")) {
+      entries.clear();
+      return;
+    }
+    entries.remove(path);
+    // all descendant paths are sorted between "<path>/" and "<path>0"
+    entries.subMap(path + "/", path + "0").clear();
+  }
+
+  /**
+   * @param path Path
+   * @return Paths of all entries at or below the given path
+   */
+  public @NotNull List<String> getPathsAtOrBelow(@NotNull String path) {
+    Collection<String> candidates = StringUtils.equals(path, "/")
+        ? entries.keySet()
+        : entries.subMap(path, true, path + "0", false).keySet();
+    List<String> result = new ArrayList<>();
+    for (String candidate : candidates) {
+      if (isAtOrBelow(candidate, path)) {
+        result.add(candidate);
+      }
+    }
+    return result;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  private void evict() {
+    // skip if another thread is already evicting
+    if (!evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      // evict more than required to avoid counting and sorting the entries on each put
+      int targetSize = maxSize - maxSize / 4;
+      // snapshot access times, as they may change concurrently while sorting
+      List<EvictionCandidate<V>> candidates = new ArrayList<>();
+      entries.forEach((path, entry) -> candidates.add(new EvictionCandidate<>(path, entry)));
+      candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+      int size = candidates.size();
+      for (int i = 0; size > targetSize && i < candidates.size(); i++) {
+        if (entries.remove(candidates.get(i).path, candidates.get(i).entry)) {
+          size--;
+        }
+      }
+      approximateSize.set(size);
+    }
+    finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private static final class Entry<V> {
+
+    private final V value;
+    private volatile long lastAccess = System.nanoTime();
+
+    Entry(V value) {
+      this.value = value;
+    }
+
+  }
+
+  private static final class EvictionCandidate<V> {
+
+    private final String path;
+    private final Entry<V> entry;
+    private final long lastAccess;
+
+    EvictionCandidate(String path, Entry<V> entry) {
+      this.path = path;
+      this.entry = entry;
+      this.lastAccess = entry.lastAccess;
+    }
+
+  }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.impl;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Resource path helper methods shared by the persistence and context path strategies.
+ */
+public final class PathUtil {
+
+  private PathUtil() {
+    // static methods only
+  }
+
+  /**
+   * Checks if the given path is the same or a descendant of the given parent path.
+   * @param path Path
+   * @param parentPath Parent path
+   * @return true if path is at or below parent path
+   */
+  public static boolean isAtOrBelow(String path, String parentPath) {
+    if (StringUtils.equals(parentPath, "/")) {
+      return true;
+    }
+    return path.startsWith(parentPath)
+        && (path.length() == parentPath.length() || path.charAt(parentPath.length()) == '/');
+  }
+
+  /**
+   * @param path Path
+   * @param parentPaths Parent paths
+   * @return true if the path is at or below one of the parent paths
+   */
+  public static boolean isAtOrBelowAny(String path, String[] parentPaths) {
+    for (String parentPath : parentPaths) {
+      if (isAtOrBelow(path, parentPath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
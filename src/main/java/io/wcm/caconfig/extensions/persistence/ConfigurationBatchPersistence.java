@@ -0,0 +1,56 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence;
+
+import java.util.Map;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.caconfig.spi.ConfigurationPersistData;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Persists many configurations at once, committing them in chunks instead of one commit per configuration.
+ * <p>
+ * Each configuration is dispatched to the first persistence strategy handling it, in the order of the service ranking.
+ * Configurations handled by the page-based persistence strategies are committed in chunks, configurations handled by
+ * other persistence strategies are persisted one by one. Configurations not handled by any persistence strategy are
+ * reported as skipped.
+ * </p>
+ */
+@ProviderType
+public interface ConfigurationBatchPersistence {
+
+  /**
+   * Persists multiple configurations, committing them in chunks of the configured batch commit size.
+   * If writing or committing a chunk fails, all changes of the chunk are reverted and the failure is reported
+   * in the result, and the remaining chunks are still processed.
+   * @param resolver Resource resolver. It must not have pending changes, as they would be committed with the
+   *          first chunk or reverted if a chunk fails.
+   * @param configurations Configuration data mapped by configuration resource path
+   * @return Result with persisted and skipped paths and failed chunks
+   * @throws ConfigurationPersistenceException if the resource resolver has pending changes
+   */
+  @NotNull
+  ConfigurationBatchResult persistConfigurations(@NotNull ResourceResolver resolver,
+      @NotNull Map<String, ConfigurationPersistData> configurations);
+
+}
@@ -0,0 +1,82 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence;
+
+import java.util.List;
+
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Result of persisting multiple configurations in chunks via {@link ConfigurationBatchPersistence}.
+ */
+@ProviderType
+public interface ConfigurationBatchResult {
+
+  /**
+   * @return Paths of configuration resources that were persisted successfully
+   */
+  @NotNull
+  List<String> getPersistedPaths();
+
+  /**
+   * @return Paths of configuration resources not handled by the persistence strategy
+   */
+  @NotNull
+  List<String> getSkippedPaths();
+
+  /**
+   * @return Chunks that could not be persisted. All changes of a failed chunk are reverted.
+   */
+  @NotNull
+  List<ChunkFailure> getFailures();
+
+  /**
+   * @return true if all chunks were persisted successfully
+   */
+  boolean isSuccessful();
+
+  /**
+   * Failure of persisting a chunk of configurations.
+   */
+  @ProviderType
+  interface ChunkFailure {
+
+    /**
+     * @return Zero-based index of the chunk
+     */
+    int getChunkIndex();
+
+    /**
+     * @return Paths of all configuration resources contained in the chunk
+     */
+    @NotNull
+    List<String> getPaths();
+
+    /**
+     * @return Exception that caused the failure
+     */
+    @NotNull
+    ConfigurationPersistenceException getException();
+
+  }
+
+}
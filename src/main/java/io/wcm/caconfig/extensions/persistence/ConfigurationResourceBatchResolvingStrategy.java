@@ -0,0 +1,57 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.caconfig.resource.spi.ConfigurationResourceResolvingStrategy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Resolves the inheritance chains of many configuration names for the same content resource at once, instead of
+ * resolving them one by one via {@link ConfigurationResourceResolvingStrategy#getResourceInheritanceChain}.
+ * <p>
+ * This service is provided by the tools config page persistence strategy. The service object is the same as the
+ * {@link ConfigurationResourceResolvingStrategy} service of the persistence strategy, so callers can check whether
+ * it is the strategy that is used for the content resource.
+ * </p>
+ */
+@ProviderType
+public interface ConfigurationResourceBatchResolvingStrategy {
+
+  /**
+   * Get the inheritance chains for multiple configuration names of the same content resource.
+   * @param contentResource Content resource
+   * @param bucketNames Names of the parent resources in which the configuration resources are stored
+   * @param configNames Configuration names
+   * @return Map with inheritance chain for each configuration name. Configuration names without any configuration
+   *         resource found are not contained in the map, for them no configuration resource exists for this strategy.
+   *         Returns null if this strategy is not enabled for the content resource.
+   */
+  @Nullable
+  Map<String, Iterator<Resource>> getResourceInheritanceChains(@NotNull Resource contentResource,
+      @NotNull Collection<String> bucketNames, @NotNull Collection<String> configNames);
+
+}
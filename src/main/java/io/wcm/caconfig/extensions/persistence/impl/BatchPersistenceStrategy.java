@@ -0,0 +1,50 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import java.util.Map;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.caconfig.spi.ConfigurationPersistData;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Persistence strategy that supports persisting multiple configurations in chunks.
+ * Used by {@link ConfigurationBatchPersistenceImpl} for all configurations the strategy accepts.
+ */
+interface BatchPersistenceStrategy {
+
+  /**
+   * @param configResourcePath Configuration resource path
+   * @return true if the configuration is handled by this persistence strategy
+   */
+  boolean acceptsConfigurationResourcePath(@NotNull String configResourcePath);
+
+  /**
+   * Persists multiple configurations accepted by this persistence strategy, committing them in chunks.
+   * @param resolver Resource resolver without pending changes
+   * @param configurations Configuration data mapped by configuration resource path
+   * @return Result
+   */
+  @NotNull
+  ConfigurationBatchResultImpl persistConfigurations(@NotNull ResourceResolver resolver,
+      @NotNull Map<String, ConfigurationPersistData> configurations);
+
+}
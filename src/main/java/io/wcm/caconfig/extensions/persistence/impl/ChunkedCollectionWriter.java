@@ -0,0 +1,327 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
+import static com.day.cq.commons.jcr.JcrConstants.NT_UNSTRUCTURED;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.apache.commons.collections4.IteratorUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.caconfig.management.ConfigurationManagementSettings;
+import org.apache.sling.caconfig.spi.ConfigurationCollectionPersistData;
+import org.apache.sling.caconfig.spi.ConfigurationPersistData;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceAccessDeniedException;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.wcm.caconfig.extensions.impl.PathUtil;
+
+/**
+ * Writes large configuration collections in chunks, to keep the transient space small.
+ * <p>
+ * Only new items are written in chunks to a staging resource, committing every <code>chunkSize</code> items.
+ * The staging resource is a hidden sibling below the same <code>jcr:content</code> resource as the collection
+ * (e.g. <code>jcr:content/sling:configCollectionStaging/sling:configs/x</code>), so it requires no permissions
+ * beside those for writing the configuration page, and it is ignored when resolving configurations.
+ * The number of processed items is stored as marker on the staging resource, so an interrupted write operation
+ * continues with the remaining items when it is executed again with the same data.
+ * </p>
+ * <p>
+ * Once all new items are staged, a single commit moves them into the collection one by one, updates the changed
+ * existing items, and moves the removed items to a hidden trash sibling, so the collection is never visible in
+ * a partially written or deleted state. Unchanged items are not touched. The trash is then deleted in chunks.
+ * </p>
+ * <p>
+ * The staging resource carries an owner token of the write operation. A concurrent write operation on another
+ * cluster node that takes over or discards the staged items is detected before swapping, and when committing a chunk
+ * concurrently. Within one JVM, the caller has to serialize write operations for the same collection.
+ * As the chunks are committed separately, the resource resolver must not have pending changes from other write
+ * operations when starting, apart from creating the configuration page.
+ * </p>
+ */
+final class ChunkedCollectionWriter {
+
+  static final String STAGING_NAME = "sling:configCollectionStaging";
+  static final String TRASH_NAME = "sling:configCollectionTrash";
+  static final String PROPERTY_WRITE_PROGRESS = "sling:configCollectionWriteProgress";
+  static final String PROPERTY_WRITE_FINGERPRINT = "sling:configCollectionWriteFingerprint";
+  static final String PROPERTY_WRITE_OWNER = "sling:configCollectionWriteOwner";
+
+  private final ResourceResolver resolver;
+  private final int chunkSize;
+  private final ConfigurationManagementSettings configurationManagementSettings;
+  private final String owner = UUID.randomUUID().toString();
+
+  private static final Logger log = LoggerFactory.getLogger(ChunkedCollectionWriter.class);
+
+  /**
+   * @param resolver Resource resolver
+   * @param chunkSize Number of items per commit
+   * @param configurationManagementSettings Configuration management settings
+   */
+  ChunkedCollectionWriter(@NotNull ResourceResolver resolver, int chunkSize,
+      @NotNull ConfigurationManagementSettings configurationManagementSettings) {
+    this.resolver = resolver;
+    this.chunkSize = Math.max(chunkSize, 1);
+    this.configurationManagementSettings = configurationManagementSettings;
+  }
+
+  /**
+   * Writes the new items of the collection to the staging resource, committing every chunk of items.
+   * Continues a previously interrupted write operation with the same data.
+   * @param collectionParentPath Configuration collection parent path
+   * @param data Collection data
+   */
+  void stage(@NotNull String collectionParentPath, @NotNull ConfigurationCollectionPersistData data) {
+    String stagingPath = getWorkPath(collectionParentPath, STAGING_NAME);
+    String fingerprint = getFingerprint(data);
+    int progress = 0;
+    Resource staging = resolver.getResource(stagingPath);
+    if (staging != null) {
+      if (StringUtils.equals(staging.getValueMap().get(PROPERTY_WRITE_FINGERPRINT, String.class), fingerprint)) {
+        progress = staging.getValueMap().get(PROPERTY_WRITE_PROGRESS, 0);
+        log.debug("Continue staging collection {} after {} items", collectionParentPath, progress);
+      }
+      else {
+        log.debug("Discard staged collection {} with other data", collectionParentPath);
+        deleteInChunks(staging);
+        staging = null;
+      }
+    }
+    if (staging == null) {
+      staging = PersistenceUtils.getOrCreateResource(resolver, stagingPath, NT_UNSTRUCTURED, null, configurationManagementSettings);
+    }
+    setProgress(staging, fingerprint, progress);
+    PersistenceUtils.commit(resolver, collectionParentPath);
+
+    Resource existing = resolver.getResource(collectionParentPath);
+    List<ConfigurationPersistData> items = new ArrayList<>(data.getItems());
+    for (int i = progress; i < items.size(); i++) {
+      ConfigurationPersistData item = items.get(i);
+      if (existing == null || existing.getChild(item.getCollectionItemName()) == null) {
+        PersistenceUtils.getOrCreateResource(resolver, stagingPath + "/" + item.getCollectionItemName(), NT_UNSTRUCTURED,
+            item.getProperties(), configurationManagementSettings);
+      }
+      if ((i + 1) % chunkSize == 0 || i + 1 == items.size()) {
+        setProgress(staging, fingerprint, i + 1);
+        PersistenceUtils.commit(resolver, collectionParentPath);
+        log.trace("! Staged {} of {} items for collection {}", i + 1, items.size(), collectionParentPath);
+      }
+    }
+  }
+
+  /**
+   * Applies the staged items, the changed items and the removed items to the collection. Changes are not committed.
+   * @param collectionParentPath Configuration collection parent path
+   * @param data Collection data
+   */
+  void swap(@NotNull String collectionParentPath, @NotNull ConfigurationCollectionPersistData data) {
+    String stagingPath = getWorkPath(collectionParentPath, STAGING_NAME);
+    // make sure concurrent changes of the staged items are visible
+    resolver.refresh();
+    Resource staging = resolver.getResource(stagingPath);
+    if (staging == null || !StringUtils.equals(staging.getValueMap().get(PROPERTY_WRITE_OWNER, String.class), owner)) {
+      throw new ConfigurationPersistenceException("Staged collection at " + stagingPath
+          + " was discarded or taken over by a concurrent write operation.");
+    }
+
+    try {
+      Resource collectionParent = PersistenceUtils.getOrCreateResource(resolver, collectionParentPath, NT_UNSTRUCTURED, null,
+          configurationManagementSettings);
+
+      // move removed items to trash
+      Set<String> itemNames = data.getItems().stream()
+          .map(ConfigurationPersistData::getCollectionItemName)
+          .collect(Collectors.toSet());
+      String trashPath = null;
+      for (Resource item : IteratorUtils.toList(collectionParent.listChildren())) {
+        if (!itemNames.contains(item.getName()) && !StringUtils.equals(item.getName(), JCR_CONTENT)) {
+          if (trashPath == null) {
+            trashPath = getWorkPath(collectionParentPath, TRASH_NAME) + "/" + owner;
+            PersistenceUtils.getOrCreateResource(resolver, trashPath, NT_UNSTRUCTURED, null, configurationManagementSettings);
+          }
+          resolver.move(item.getPath(), trashPath);
+        }
+      }
+
+      // move new items and update changed items
+      for (ConfigurationPersistData item : data.getItems()) {
+        Resource itemResource = collectionParent.getChild(item.getCollectionItemName());
+        if (itemResource != null) {
+          PersistenceUtils.replaceProperties(itemResource, item.getProperties(), configurationManagementSettings);
+        }
+        else if (staging.getChild(item.getCollectionItemName()) != null) {
+          resolver.move(stagingPath + "/" + item.getCollectionItemName(), collectionParentPath);
+        }
+        else {
+          throw new ConfigurationPersistenceException("Staged collection item not found at " + stagingPath
+              + "/" + item.getCollectionItemName());
+        }
+      }
+      if (data.getProperties() != null) {
+        PersistenceUtils.replaceProperties(collectionParent, data.getProperties(), configurationManagementSettings);
+      }
+
+      delete(staging);
+      deleteEmptyAncestors(ResourceUtil.getParent(stagingPath), getWorkRootPath(collectionParentPath, STAGING_NAME));
+    }
+    catch (PersistenceException ex) {
+      throw new ConfigurationPersistenceException("Unable to replace configuration collection at " + collectionParentPath, ex);
+    }
+  }
+
+  /**
+   * Deletes the removed items in chunks.
+   * @param collectionParentPath Configuration collection parent path
+   */
+  void purge(@NotNull String collectionParentPath) {
+    String trashPath = getWorkPath(collectionParentPath, TRASH_NAME) + "/" + owner;
+    Resource trash = resolver.getResource(trashPath);
+    if (trash != null) {
+      deleteInChunks(trash);
+      try {
+        deleteEmptyAncestors(ResourceUtil.getParent(trashPath), getWorkRootPath(collectionParentPath, TRASH_NAME));
+      }
+      catch (PersistenceException ex) {
+        throw new ConfigurationPersistenceException("Unable to delete removed configuration collection items at " + trashPath, ex);
+      }
+      PersistenceUtils.commit(resolver, trashPath);
+    }
+  }
+
+  /**
+   * Deletes the given resource and its ancestors up to the root path as long as they have no children.
+   */
+  private void deleteEmptyAncestors(String path, String rootPath) throws PersistenceException {
+    Resource resource = resolver.getResource(path);
+    while (resource != null && !resource.hasChildren() && PathUtil.isAtOrBelow(resource.getPath(), rootPath)) {
+      Resource next = resource.getParent();
+      resolver.delete(resource);
+      resource = next;
+    }
+  }
+
+  private void setProgress(Resource staging, String fingerprint, int progress) {
+    ModifiableValueMap props = toModifiableValueMap(staging);
+    props.put(PROPERTY_WRITE_FINGERPRINT, fingerprint);
+    props.put(PROPERTY_WRITE_PROGRESS, progress);
+    props.put(PROPERTY_WRITE_OWNER, owner);
+  }
+
+  /**
+   * Deletes the given resource with all descendants bottom-up, committing every chunk.
+   */
+  private void deleteInChunks(Resource resource) {
+    String path = resource.getPath();
+    int count = deleteTree(resource, 0);
+    PersistenceUtils.commit(resolver, path);
+    log.trace("! Deleted {} with {} resources", path, count);
+  }
+
+  private int deleteTree(Resource resource, int count) {
+    int deleted = count;
+    for (Resource child : IteratorUtils.toList(resource.listChildren())) {
+      deleted = deleteTree(child, deleted);
+    }
+    delete(resource);
+    if (++deleted % chunkSize == 0) {
+      PersistenceUtils.commit(resolver, resource.getPath());
+    }
+    return deleted;
+  }
+
+  private void delete(Resource resource) {
+    try {
+      resolver.delete(resource);
+    }
+    catch (PersistenceException ex) {
+      throw new ConfigurationPersistenceException("Unable to delete resource at " + resource.getPath(), ex);
+    }
+  }
+
+  private static ModifiableValueMap toModifiableValueMap(Resource resource) {
+    ModifiableValueMap props = resource.adaptTo(ModifiableValueMap.class);
+    if (props == null) {
+      throw new ConfigurationPersistenceAccessDeniedException("No write access: Unable to store configuration data to " + resource.getPath() + ".");
+    }
+    return props;
+  }
+
+  /**
+   * @return Path of the hidden sibling for the collection, e.g.
+   *         <code>/content/site1/tools/config/jcr:content/sling:configCollectionStaging/sling:configs/x</code>
+   */
+  static String getWorkPath(String collectionParentPath, String workName) {
+    String basePath = getBasePath(collectionParentPath);
+    return basePath + "/" + workName + collectionParentPath.substring(basePath.length());
+  }
+
+  private static String getWorkRootPath(String collectionParentPath, String workName) {
+    return getBasePath(collectionParentPath) + "/" + workName;
+  }
+
+  /**
+   * @return Path of the jcr:content resource containing the collection, or the parent of the collection
+   */
+  private static String getBasePath(String collectionParentPath) {
+    int index = collectionParentPath.indexOf("/" + JCR_CONTENT + "/");
+    if (index >= 0) {
+      return collectionParentPath.substring(0, index + JCR_CONTENT.length() + 1);
+    }
+    return ResourceUtil.getParent(collectionParentPath);
+  }
+
+  /**
+   * @return Fingerprint of the collection data, to detect if a staged collection was written with the same data
+   */
+  static String getFingerprint(ConfigurationCollectionPersistData data) {
+    long hash = hashProperties(data.getProperties());
+    for (ConfigurationPersistData item : data.getItems()) {
+      hash = 31 * hash + item.getCollectionItemName().hashCode();
+      hash = 31 * hash + hashProperties(item.getProperties());
+    }
+    return data.getItems().size() + "-" + Long.toHexString(hash);
+  }
+
+  private static long hashProperties(Map<String, Object> properties) {
+    if (properties == null) {
+      return 0;
+    }
+    List<String> entries = new ArrayList<>();
+    properties.forEach((name, value) -> entries.add(name + "=" + Arrays.deepHashCode(new Object[] { value })));
+    return entries.stream().sorted().collect(Collectors.joining(",")).hashCode();
+  }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries write operations whose commit failed due to conflicting concurrent changes, e.g. when multiple
+ * authors write configurations to the same configuration page at the same time.
+ * <p>
+ * Before each retry the pending changes are reverted and the resource resolver is refreshed, and the write operation
+ * is executed again to re-apply the configuration changes on top of the current repository state.
+ * The delay between the retries grows exponentially up to a maximum, with random jitter to avoid repeated collisions.
+ * </p>
+ * <p>
+ * Reverting would also discard changes that were pending in the resource resolver before the write operation started,
+ * and that cannot be re-applied. So the write operation is not retried if the resource resolver had pending changes
+ * when it started.
+ * </p>
+ */
+final class CommitRetry {
+
+  static final CommitRetry NONE = new CommitRetry(CommitRetry.class.getName(), 0, 0, 0, MetricsService.NOOP);
+
+  private static final int MAX_BACKOFF_SHIFT = 20;
+
+  private final int maxRetries;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+
+  private final AtomicLong conflictCount = new AtomicLong();
+  private final AtomicLong retryCount = new AtomicLong();
+  private final Counter attemptCounter;
+  private final Counter conflictCounter;
+  private final Counter retryCounter;
+  private final Counter exhaustedCounter;
+
+  private static final Logger log = LoggerFactory.getLogger(CommitRetry.class);
+
+  /**
+   * @param metricsPrefix Prefix for the metric names, usually the class name of the persistence strategy
+   * @param maxRetries Maximum number of retries
+   * @param initialBackoffMillis Delay before the first retry
+   * @param maxBackoffMillis Maximum delay between retries
+   * @param metricsService Metrics service
+   */
+  CommitRetry(@NotNull String metricsPrefix, int maxRetries, long initialBackoffMillis, long maxBackoffMillis,
+      @NotNull MetricsService metricsService) {
+    this.maxRetries = Math.max(maxRetries, 0);
+    this.initialBackoffMillis = Math.max(initialBackoffMillis, 0);
+    this.maxBackoffMillis = Math.max(maxBackoffMillis, this.initialBackoffMillis);
+    this.attemptCounter = metricsService.counter(metricsPrefix + ".attempts");
+    this.conflictCounter = metricsService.counter(metricsPrefix + ".conflicts");
+    this.retryCounter = metricsService.counter(metricsPrefix + ".retries");
+    this.exhaustedCounter = metricsService.counter(metricsPrefix + ".retriesExhausted");
+  }
+
+  /**
+   * Executes the write operation, and executes it again if committing failed due to a conflict.
+   * @param resolver Resource resolver used by the write operation
+   * @param operation Write operation, applies the changes and commits them
+   * @param <T> Result type
+   * @return Result of the write operation
+   * @throws ConfigurationPersistenceException if the write operation failed, or the conflict persisted after all retries,
+   *           or the conflict cannot be retried because the resource resolver had pending changes before
+   */
+  <T> T execute(@NotNull ResourceResolver resolver, @NotNull Supplier<T> operation) {
+    boolean hadPendingChanges = maxRetries > 0 && resolver.hasChanges();
+    int retry = 0;
+    while (true) {
+      attemptCounter.increment();
+      try {
+        return operation.get();
+      }
+      catch (ConfigurationPersistenceException ex) {
+        if (!PersistenceUtils.isConflict(ex)) {
+          throw ex;
+        }
+        conflictCount.incrementAndGet();
+        conflictCounter.increment();
+        if (retry >= maxRetries) {
+          if (maxRetries > 0) {
+            log.warn("Conflict persisted after {} retries: {}", maxRetries, ex.getMessage());
+            exhaustedCounter.increment();
+          }
+          throw ex;
+        }
+        if (hadPendingChanges) {
+          log.warn("Conflict is not retried because the resource resolver had pending changes before the write operation: {}",
+              ex.getMessage());
+          throw ex;
+        }
+        resolver.revert();
+        resolver.refresh();
+        long backoffMillis = getBackoffMillis(retry);
+        log.debug("Retry write operation in {} ms after conflict: {}", backoffMillis, ex.getMessage());
+        if (!sleep(backoffMillis)) {
+          throw ex;
+        }
+        retry++;
+        retryCount.incrementAndGet();
+        retryCounter.increment();
+      }
+    }
+  }
+
+  /**
+   * @param retry Number of retries done before
+   * @return Delay before next retry: exponential backoff, with half of the delay randomized
+   */
+  long getBackoffMillis(int retry) {
+    long backoffMillis = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(retry, MAX_BACKOFF_SHIFT));
+    return backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis - backoffMillis / 2 + 1);
+  }
+
+  private static boolean sleep(long millis) {
+    if (millis <= 0) {
+      return true;
+    }
+    try {
+      Thread.sleep(millis);
+      return true;
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  long getConflictCount() {
+    return conflictCount.get();
+  }
+
+  long getRetryCount() {
+    return retryCount.get();
+  }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.caconfig.spi.ConfigurationPersistData;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Writes multiple configurations and commits them in chunks. Each chunk is written with its own
+ * {@link ConfigWriteContext}. If writing or committing a chunk fails,
+ * its changes are reverted and the failure is reported, and the remaining chunks are processed.
+ * Chunks whose commit failed due to a conflict are written again according to the given {@link CommitRetry}.
+ * If {@link PageWriteLocks} are given, the locks of all pages of a chunk are held while writing it, and released
+ * while waiting before a retry.
+ * <p>
+ * Committing and reverting a chunk affects all pending changes of the resource resolver, so persisting is rejected
+ * if the resource resolver already has pending changes.
+ * </p>
+ */
+final class ConfigBatchWriter {
+
+  /**
+   * Writes a single configuration without committing.
+   */
+  @FunctionalInterface
+  interface Writer {
+
+    /**
+     * @param writeContext Write context of current chunk
+     * @param configResourcePath Configuration resource path
+     * @param data Configuration data
+     * @return true if the configuration is handled by the persistence strategy
+     */
+    boolean write(@NotNull ConfigWriteContext writeContext, @NotNull String configResourcePath, @NotNull ConfigurationPersistData data);
+
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(ConfigBatchWriter.class);
+
+  private ConfigBatchWriter() {
+    // static methods only
+  }
+
+  /**
+   * @param resolver Resource resolver
+   * @param writeContextFactory Creates a write context for the resource resolver
+   * @param configurations Configuration data mapped by configuration resource path
+   * @param chunkSize Number of configurations per chunk
+   * @param writer Writes a single configuration
+   * @param commitRetry Retries chunks whose commit failed due to a conflict
+   * @param pageWriteLocks Page write locks, or null
+   * @return Result
+   * @throws ConfigurationPersistenceException if the resource resolver has pending changes
+   */
+  static @NotNull ConfigurationBatchResultImpl persist(@NotNull ResourceResolver resolver,
+      @NotNull Supplier<ConfigWriteContext> writeContextFactory,
+      @NotNull Map<String, ConfigurationPersistData> configurations, int chunkSize, @NotNull Writer writer,
+      @NotNull CommitRetry commitRetry, @Nullable PageWriteLocks pageWriteLocks) {
+    if (resolver.hasChanges()) {
+      throw new ConfigurationPersistenceException("Unable to persist configurations: Resource resolver has pending changes.");
+    }
+    ConfigurationBatchResultImpl result = new ConfigurationBatchResultImpl();
+    Iterator<Map.Entry<String, ConfigurationPersistData>> entries = configurations.entrySet().iterator();
+    while (entries.hasNext()) {
+      List<Map.Entry<String, ConfigurationPersistData>> chunk = new ArrayList<>();
+      while (entries.hasNext() && chunk.size() < Math.max(chunkSize, 1)) {
+        chunk.add(entries.next());
+      }
+      persistChunk(resolver, writeContextFactory, result.addChunk(), chunk, writer, commitRetry, pageWriteLocks, result);
+    }
+    return result;
+  }
+
+  private static void persistChunk(ResourceResolver resolver, Supplier<ConfigWriteContext> writeContextFactory,
+      int chunkIndex, List<Map.Entry<String, ConfigurationPersistData>> chunk, Writer writer, CommitRetry commitRetry,
+      PageWriteLocks pageWriteLocks, ConfigurationBatchResultImpl result) {
+    List<String> chunkPaths = new ArrayList<>();
+    List<String> skippedPaths = new ArrayList<>();
+    Supplier<Void> writeChunk = () -> {
+      // start over with a fresh write context on each retry
+      ConfigWriteContext writeContext = writeContextFactory.get();
+      chunkPaths.clear();
+      skippedPaths.clear();
+      for (Map.Entry<String, ConfigurationPersistData> entry : chunk) {
+        if (writer.write(writeContext, entry.getKey(), entry.getValue())) {
+          chunkPaths.add(entry.getKey());
+        }
+        else {
+          skippedPaths.add(entry.getKey());
+        }
+      }
+      if (resolver.hasChanges()) {
+        writeContext.updatePageLastMod();
+        PersistenceUtils.commit(resolver, chunk.get(0).getKey());
+      }
+      return null;
+    };
+    try {
+      if (pageWriteLocks != null) {
+        // hold the locks of all pages of the chunk per attempt, not while waiting before a retry
+        List<String> lockPaths = new ArrayList<>();
+        chunk.forEach(entry -> lockPaths.add(entry.getKey()));
+        commitRetry.execute(resolver, () -> pageWriteLocks.execute(lockPaths, writeChunk));
+      }
+      else {
+        commitRetry.execute(resolver, writeChunk);
+      }
+      result.addPersisted(chunkPaths);
+      skippedPaths.forEach(result::addSkipped);
+      log.debug("Persisted configuration chunk {} with {} configurations", chunkIndex, chunkPaths.size());
+    }
+    catch (ConfigurationPersistenceException ex) {
+      log.warn("Unable to persist configuration chunk {}: {}", chunkIndex, ex.getMessage());
+      resolver.revert();
+      List<String> paths = new ArrayList<>();
+      chunk.forEach(entry -> paths.add(entry.getKey()));
+      result.addFailure(new ConfigurationBatchResultImpl.ChunkFailureImpl(chunkIndex, paths, ex));
+    }
+  }
+
+}
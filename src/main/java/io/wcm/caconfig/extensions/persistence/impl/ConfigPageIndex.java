@@ -0,0 +1,594 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
+import static com.day.cq.commons.jcr.JcrConstants.JCR_PRIMARYTYPE;
+import static com.day.cq.commons.jcr.JcrConstants.NT_FOLDER;
+import static io.wcm.caconfig.extensions.impl.PathUtil.isAtOrBelow;
+import static io.wcm.caconfig.extensions.impl.PathUtil.isAtOrBelowAny;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.Gauge;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.wcm.api.NameConstants;
+
+import io.wcm.caconfig.extensions.impl.PathCache;
+
+/**
+ * Index of the buckets (e.g. <code>sling:configs</code>) and configuration names existing below each config
+ * reference (e.g. <code>/content/site1/tools/config/jcr:content</code>). Lookups of configuration resources that
+ * are not contained in the index are skipped without accessing the repository.
+ * <p>
+ * Config references below the observed paths and the index paths are read once when first needed via a listing of
+ * the config reference and its buckets, and re-read after the config reference or one of its buckets or configurations
+ * was added or removed. They are always read with a service resource resolver, so the result does not depend on the
+ * permissions of the user doing the lookup. Config references the service user is not allowed to read are unknown.
+ * </p>
+ * <p>
+ * Optionally all configuration pages below the index paths are read on activation by traversing the page hierarchy
+ * using a service resource resolver. Only pages and folders are traversed, the DAM and other hierarchies are skipped,
+ * as well as subtrees that failed to be traversed. The traversal only prefills the index: config references that
+ * are not contained in it (e.g. created on another cluster node, and the change event was not received yet) are
+ * unknown and read when first needed.
+ * </p>
+ */
+final class ConfigPageIndex implements ResourceChangeListener, ExternalResourceChangeListener {
+
+  static final String SUBSERVICE_NAME = "config-index";
+
+  private static final String METRICS_PREFIX = ToolsConfigPagePersistenceStrategy.class.getName() + ".configPageIndex";
+  private static final Map<String, Set<String>> CONFIG_REF_MISSING = Collections.emptyMap();
+  private static final Map<String, Set<String>> CONFIG_REF_UNKNOWN = Collections.unmodifiableMap(new HashMap<>());
+  private static final Set<String> TRAVERSED_NODE_TYPES = Set.of(NameConstants.NT_PAGE, NT_FOLDER,
+      "sling:Folder", "sling:OrderedFolder");
+  private static final String[] EXCLUDED_PATHS = { "/content/dam" };
+
+  private final Collection<String> bucketNames;
+  private final String[] observedPaths;
+  private final ResourceResolverFactory resourceResolverFactory;
+  private final String relativeConfigPath;
+  private final String[] indexPaths;
+
+  // config reference -> bucket name -> config names
+  private final PathCache<Map<String, Set<String>>> configRefs;
+  private final PathCache<Map<String, Set<String>>> indexedConfigRefs = new PathCache<>(0);
+  // paths below the index paths that are not traversed or not readable
+  private final NavigableSet<String> skippedPaths = new ConcurrentSkipListSet<>();
+  private final List<ResourceChange> pendingChanges = new ArrayList<>();
+  private volatile boolean complete;
+  private volatile boolean cancelled;
+  // long-lived service resource resolver for reading config references when first needed, guarded by this
+  private ResourceResolver serviceResourceResolver;
+  private boolean serviceLoginFailed;
+
+  private final AtomicLong savedLookupCount = new AtomicLong();
+  private final Counter savedLookupCounter;
+
+  private static final Logger log = LoggerFactory.getLogger(ConfigPageIndex.class);
+
+  /**
+   * @param bucketNames Bucket names
+   * @param maxSize Maximum number of config references read when first needed
+   * @param observedPaths Config references below these paths are read when first needed
+   * @param resourceResolverFactory Resource resolver factory, required for reading the index paths
+   * @param relativeConfigPath Relative config path (plain path), required for reading the index paths
+   * @param indexPaths All configuration pages below these paths are read via {@link #build()}
+   * @param metricsService Metrics service
+   */
+  @SuppressWarnings("java:S107")
+  ConfigPageIndex(@NotNull Collection<String> bucketNames, int maxSize, @NotNull String[] observedPaths,
+      @Nullable ResourceResolverFactory resourceResolverFactory, @Nullable String relativeConfigPath,
+      @NotNull String[] indexPaths, @NotNull MetricsService metricsService) {
+    this.bucketNames = bucketNames;
+    this.observedPaths = observedPaths;
+    this.resourceResolverFactory = resourceResolverFactory;
+    this.relativeConfigPath = relativeConfigPath;
+    this.indexPaths = indexPaths;
+    this.configRefs = new PathCache<>(maxSize);
+    this.savedLookupCounter = metricsService.counter(METRICS_PREFIX + ".savedLookups");
+  }
+
+  /**
+   * Checks if a bucket may exist below the given config reference.
+   * @param configRef Config reference
+   * @param bucketName Bucket name
+   * @return false if the bucket is known to not exist
+   */
+  boolean mayExist(@NotNull String configRef, @NotNull String bucketName) {
+    Map<String, Set<String>> buckets = getBuckets(configRef, bucketName);
+    return buckets == null || recordLookup(buckets.containsKey(bucketName));
+  }
+
+  /**
+   * Checks if a configuration resource may exist.
+   * @param configRef Config reference
+   * @param bucketName Bucket name
+   * @param configName Configuration name
+   * @return false if the configuration resource is known to not exist
+   */
+  boolean mayExist(@NotNull String configRef, @NotNull String bucketName, @NotNull String configName) {
+    Map<String, Set<String>> buckets = getBuckets(configRef, bucketName);
+    if (buckets == null) {
+      return true;
+    }
+    Set<String> names = buckets.get(bucketName);
+    return recordLookup(names != null && names.contains(StringUtils.substringBefore(configName, "/")));
+  }
+
+  /**
+   * @return Buckets of the config reference, or null if they are not known
+   */
+  private @Nullable Map<String, Set<String>> getBuckets(String configRef, String bucketName) {
+    if (!bucketNames.contains(bucketName)) {
+      return null;
+    }
+    if (complete) {
+      Map<String, Set<String>> buckets = indexedConfigRefs.get(configRef);
+      if (buckets != null) {
+        return buckets;
+      }
+    }
+    // config references missing in the index are unknown, and read when first needed
+    if (!isAtOrBelowAny(configRef, observedPaths) && !(isAtOrBelowAny(configRef, indexPaths) && !isSkipped(configRef))) {
+      return null;
+    }
+    long readGeneration = configRefs.getGeneration();
+    Map<String, Set<String>> buckets = configRefs.get(configRef);
+    if (buckets == null) {
+      buckets = readBuckets(configRef);
+      if (buckets == null) {
+        return null;
+      }
+      configRefs.put(configRef, buckets, readGeneration);
+    }
+    return buckets != CONFIG_REF_UNKNOWN ? buckets : null;
+  }
+
+  /**
+   * Reads the buckets of a config reference with the long-lived service resource resolver.
+   * @return Buckets, or null if the service resource resolver is not available
+   */
+  private synchronized @Nullable Map<String, Set<String>> readBuckets(String configRef) {
+    if (cancelled || serviceLoginFailed) {
+      return null;
+    }
+    try {
+      if (serviceResourceResolver == null) {
+        serviceResourceResolver = getServiceResourceResolver();
+      }
+      else {
+        serviceResourceResolver.refresh();
+      }
+    }
+    catch (LoginException ex) {
+      log.warn("Unable to read configuration pages for config page index: {}", ex.getMessage());
+      serviceLoginFailed = true;
+      return null;
+    }
+    Map<String, Set<String>> buckets = readBuckets(serviceResourceResolver, configRef,
+        serviceResourceResolver.getResource(configRef));
+    if (buckets == CONFIG_REF_UNKNOWN && isAtOrBelowAny(configRef, indexPaths)) {
+      skippedPaths.add(configRef);
+    }
+    return buckets;
+  }
+
+  /**
+   * @return Buckets, or {@link #CONFIG_REF_UNKNOWN} if the service user is not allowed to read all of them
+   */
+  private Map<String, Set<String>> readBuckets(ResourceResolver resourceResolver, String configRef,
+      @Nullable Resource configResource) {
+    if (configResource == null) {
+      if (!canRead(resourceResolver, configRef)) {
+        log.debug("Config reference is not readable for config page index: {}", configRef);
+        return CONFIG_REF_UNKNOWN;
+      }
+      log.trace("- Index config reference {}: not found", configRef);
+      return CONFIG_REF_MISSING;
+    }
+    Map<String, Set<String>> buckets = new HashMap<>();
+    for (String bucketName : bucketNames) {
+      Resource bucket = configResource.getChild(bucketName);
+      if (bucket != null) {
+        Set<String> names = new HashSet<>();
+        bucket.getChildren().forEach(child -> names.add(child.getName()));
+        buckets.put(bucketName, names);
+      }
+      else if (!canRead(resourceResolver, configRef + "/" + bucketName)) {
+        log.debug("Bucket is not readable for config page index: {}/{}", configRef, bucketName);
+        return CONFIG_REF_UNKNOWN;
+      }
+    }
+    log.trace("+ Index config reference {}: {}", configRef, buckets);
+    return buckets;
+  }
+
+  /**
+   * Checks if the user of the resource resolver is allowed to read the given path, even if it does not exist.
+   */
+  private static boolean canRead(ResourceResolver resourceResolver, String path) {
+    Session session = resourceResolver.adaptTo(Session.class);
+    if (session == null) {
+      return true;
+    }
+    try {
+      return session.hasPermission(path, Session.ACTION_READ);
+    }
+    catch (RepositoryException ex) {
+      log.debug("Unable to check read permission for {}: {}", path, ex.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Builds the index by traversing all index paths.
+   */
+  void build() {
+    if (indexPaths.length == 0) {
+      return;
+    }
+    long startTime = System.currentTimeMillis();
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      for (String indexPath : indexPaths) {
+        Resource root = resourceResolver.getResource(indexPath);
+        if (root != null) {
+          indexSubtree(root);
+        }
+      }
+    }
+    catch (LoginException ex) {
+      log.warn("Unable to build configuration page index: {}", ex.getMessage());
+      return;
+    }
+    if (cancelled) {
+      return;
+    }
+    // apply changes received while traversing
+    List<ResourceChange> changes;
+    synchronized (pendingChanges) {
+      complete = true;
+      changes = new ArrayList<>(pendingChanges);
+      pendingChanges.clear();
+    }
+    if (!changes.isEmpty()) {
+      updateIndex(changes);
+    }
+    log.info("Built configuration page index with {} configuration pages in {} ms, estimated heap size: {} bytes",
+        getConfigPageCount(), System.currentTimeMillis() - startTime, getEstimatedHeapSize());
+  }
+
+  void cancel() {
+    cancelled = true;
+    synchronized (this) {
+      if (serviceResourceResolver != null) {
+        serviceResourceResolver.close();
+        serviceResourceResolver = null;
+      }
+    }
+  }
+
+  boolean isComplete() {
+    return complete;
+  }
+
+  @Override
+  public void onChange(@NotNull List<ResourceChange> changes) {
+    // buckets and names only change if resources are added or removed
+    for (ResourceChange change : changes) {
+      if (change.getType() != ChangeType.CHANGED) {
+        invalidateConfigRefs(change.getPath());
+      }
+    }
+    if (indexPaths.length == 0 || cancelled) {
+      return;
+    }
+    synchronized (pendingChanges) {
+      if (!complete) {
+        pendingChanges.addAll(changes);
+        return;
+      }
+    }
+    updateIndex(changes);
+  }
+
+  /**
+   * Invalidates the index after the given path was written and committed, to make the changes visible instantly
+   * and not only after the change event is received. The affected config reference is read again when next needed.
+   * @param path Written path
+   */
+  void update(@NotNull String path) {
+    invalidateConfigRefs(path);
+    String configRef = getConfigRef(path);
+    if (configRef != null) {
+      indexedConfigRefs.invalidate(configRef);
+    }
+  }
+
+  /**
+   * Invalidates all config references at or below the given path, and the config references containing it.
+   */
+  private void invalidateConfigRefs(String path) {
+    configRefs.invalidateAtOrBelow(path);
+    String parentPath = ResourceUtil.getParent(path);
+    while (parentPath != null) {
+      configRefs.invalidate(parentPath);
+      parentPath = ResourceUtil.getParent(parentPath);
+    }
+  }
+
+  private void updateIndex(List<ResourceChange> changes) {
+    // sort paths to process subtrees only once
+    Set<String> removedPaths = new TreeSet<>();
+    Set<String> addedPaths = new TreeSet<>();
+    Set<String> changedConfigRefs = new TreeSet<>();
+    for (ResourceChange change : changes) {
+      String path = change.getPath();
+      String configRef = getConfigRef(path);
+      if (configRef != null) {
+        changedConfigRefs.add(configRef);
+      }
+      else if (change.getType() == ChangeType.REMOVED) {
+        removedPaths.add(path);
+      }
+      else if (change.getType() == ChangeType.ADDED && !PersistenceUtils.containsJcrContent(path)) {
+        addedPaths.add(path);
+      }
+    }
+
+    for (String removedPath : removedPaths) {
+      indexedConfigRefs.invalidateAtOrBelow(removedPath);
+      skippedPaths.remove(removedPath);
+      skippedPaths.subSet(removedPath + "/", removedPath + "0").clear();
+    }
+    if (addedPaths.isEmpty() && changedConfigRefs.isEmpty()) {
+      return;
+    }
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      String lastAddedPath = null;
+      for (String addedPath : addedPaths) {
+        if ((lastAddedPath != null && isAtOrBelow(addedPath, lastAddedPath)) || isSkipped(addedPath)) {
+          continue;
+        }
+        lastAddedPath = addedPath;
+        Resource resource = resourceResolver.getResource(addedPath);
+        if (resource != null) {
+          if (isTraversed(resource)) {
+            indexSubtree(resource);
+          }
+          else {
+            skippedPaths.add(addedPath);
+          }
+        }
+      }
+      for (String configRef : changedConfigRefs) {
+        if (isIndexed(configRef)) {
+          indexConfigRef(resourceResolver, configRef, resourceResolver.getResource(configRef));
+        }
+      }
+    }
+    catch (LoginException ex) {
+      log.warn("Unable to update configuration page index, disable index: {}", ex.getMessage());
+      cancelled = true;
+      complete = false;
+    }
+  }
+
+  /**
+   * Indexes the given subtree, and skips it if traversing it failed.
+   */
+  private void indexSubtree(Resource resource) {
+    try {
+      index(resource);
+    }
+    catch (RuntimeException ex) {
+      log.warn("Unable to index configuration pages below {}, skip subtree: {}", resource.getPath(), ex.getMessage(), ex);
+      skippedPaths.add(resource.getPath());
+      indexedConfigRefs.invalidateAtOrBelow(resource.getPath());
+    }
+  }
+
+  /**
+   * Traverses the given resource and all descendant pages and folders, and indexes all configuration pages.
+   */
+  private void index(Resource resource) {
+    if (cancelled) {
+      return;
+    }
+    String configRef = resource.getPath() + relativeConfigPath;
+    indexConfigRef(resource.getResourceResolver(), configRef,
+        resource.getChild(StringUtils.removeStart(relativeConfigPath, "/")));
+    for (Resource child : resource.getChildren()) {
+      if (StringUtils.equals(child.getName(), JCR_CONTENT)) {
+        continue;
+      }
+      if (isTraversed(child)) {
+        indexSubtree(child);
+      }
+      else {
+        skippedPaths.add(child.getPath());
+      }
+    }
+  }
+
+  /**
+   * @return true for pages and folders, except configuration pages and excluded hierarchies like DAM
+   */
+  private boolean isTraversed(Resource resource) {
+    String path = resource.getPath();
+    String parentPath = ResourceUtil.getParent(path);
+    if (parentPath != null && (parentPath + relativeConfigPath).startsWith(path + "/")) {
+      return false;
+    }
+    return !isAtOrBelowAny(path, EXCLUDED_PATHS)
+        && TRAVERSED_NODE_TYPES.contains(resource.getValueMap().get(JCR_PRIMARYTYPE, String.class));
+  }
+
+  private void indexConfigRef(ResourceResolver resourceResolver, String configRef, Resource configResource) {
+    Map<String, Set<String>> buckets = configResource != null
+        ? readBuckets(resourceResolver, configRef, configResource) : CONFIG_REF_MISSING;
+    if (buckets == CONFIG_REF_MISSING) {
+      indexedConfigRefs.invalidate(configRef);
+    }
+    else if (buckets == CONFIG_REF_UNKNOWN) {
+      indexedConfigRefs.invalidate(configRef);
+      skippedPaths.add(configRef);
+    }
+    else {
+      indexedConfigRefs.put(configRef, buckets);
+    }
+  }
+
+  /**
+   * @return Config reference if the given path is at or below a config reference
+   */
+  private @Nullable String getConfigRef(String path) {
+    if (relativeConfigPath == null) {
+      return null;
+    }
+    int index = path.indexOf(relativeConfigPath);
+    while (index >= 0) {
+      int end = index + relativeConfigPath.length();
+      if (end == path.length() || path.charAt(end) == '/') {
+        return path.substring(0, end);
+      }
+      index = path.indexOf(relativeConfigPath, index + 1);
+    }
+    return null;
+  }
+
+  /**
+   * @return true if the context of the config reference was traversed when building the index, and is kept up to date
+   */
+  private boolean isIndexed(String configRef) {
+    if (!complete || !configRef.endsWith(relativeConfigPath)) {
+      return false;
+    }
+    String contextPath = StringUtils.removeEnd(configRef, relativeConfigPath);
+    return isAtOrBelowAny(contextPath, indexPaths)
+        && !PersistenceUtils.containsJcrContent(contextPath)
+        && !isSkipped(contextPath);
+  }
+
+  private boolean isSkipped(String path) {
+    String currentPath = path;
+    while (currentPath != null) {
+      if (skippedPaths.contains(currentPath)) {
+        return true;
+      }
+      currentPath = ResourceUtil.getParent(currentPath);
+    }
+    return false;
+  }
+
+  private boolean recordLookup(boolean mayExist) {
+    if (!mayExist) {
+      savedLookupCount.incrementAndGet();
+      savedLookupCounter.increment();
+    }
+    return mayExist;
+  }
+
+  /**
+   * @return Number of lookups skipped because the resource is known to not exist
+   */
+  long getSavedLookupCount() {
+    return savedLookupCount.get();
+  }
+
+  /**
+   * @return Gauges reporting the number of indexed configuration pages and the estimated heap size, by metric name
+   */
+  Map<String, Gauge<?>> getGauges() {
+    return Map.of(
+        METRICS_PREFIX + ".configPages", (Gauge<Integer>)this::getConfigPageCount,
+        METRICS_PREFIX + ".estimatedHeapSize", (Gauge<Long>)this::getEstimatedHeapSize);
+  }
+
+  int getConfigPageCount() {
+    return indexedConfigRefs.size();
+  }
+
+  /**
+   * Estimates the heap size of the index, assuming compact strings and default hash map overhead.
+   * @return Estimated heap size in bytes
+   */
+  long getEstimatedHeapSize() {
+    long size = 0;
+    for (String configRef : indexedConfigRefs.getPathsAtOrBelow("/")) {
+      Map<String, Set<String>> buckets = indexedConfigRefs.get(configRef);
+      if (buckets == null) {
+        continue;
+      }
+      size += estimateEntry(configRef);
+      for (Map.Entry<String, Set<String>> bucket : buckets.entrySet()) {
+        size += estimateEntry(bucket.getKey());
+        for (String name : bucket.getValue()) {
+          size += estimateEntry(name);
+        }
+      }
+    }
+    for (String skippedPath : skippedPaths) {
+      size += estimateEntry(skippedPath);
+    }
+    return size;
+  }
+
+  private static long estimateEntry(String value) {
+    // map node + string object + byte array
+    return 40L + 24L + 16L + value.length();
+  }
+
+  private ResourceResolver getServiceResourceResolver() throws LoginException {
+    return resourceResolverFactory.getServiceResourceResolver(Map.of(ResourceResolverFactory.SUBSERVICE, SUBSERVICE_NAME));
+  }
+
+}
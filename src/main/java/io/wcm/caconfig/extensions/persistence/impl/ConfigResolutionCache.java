@@ -0,0 +1,228 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
+import static io.wcm.caconfig.extensions.impl.PathUtil.isAtOrBelow;
+import static io.wcm.caconfig.extensions.impl.PathUtil.isAtOrBelowAny;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.wcm.caconfig.extensions.impl.PathCache;
+
+/**
+ * Cross-request cache for resolving configuration resources in {@link ToolsConfigPagePersistenceStrategy}.
+ * <p>
+ * It caches the ordered list of config references detected for a content path, and the configuration resource
+ * paths that are known to not exist. Only paths below the observed paths are cached, all entries are invalidated
+ * via resource change events (including external events from other cluster nodes).
+ * </p>
+ * <p>
+ * Config references depend on the properties of the page containing the content path and its ancestor pages, so a
+ * change inside a page invalidates the config references of the page and all content paths below it.
+ * Values are only stored if the cache was not invalidated since the generation passed to the put methods was read.
+ * </p>
+ */
+final class ConfigResolutionCache implements ResourceChangeListener, ExternalResourceChangeListener {
+
+  private static final String METRICS_PREFIX = ToolsConfigPagePersistenceStrategy.class.getName() + ".resolutionCache";
+
+  private final String[] observedPaths;
+  // content path -> bucket names -> config references
+  private final PathCache<Map<String, List<String>>> configRefs;
+  private final PathCache<Boolean> missingResourcePaths;
+  private final AtomicLong generation = new AtomicLong();
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final Counter hitCounter;
+  private final Counter missCounter;
+
+  private static final Logger log = LoggerFactory.getLogger(ConfigResolutionCache.class);
+
+  ConfigResolutionCache(int maxSize, @NotNull String[] observedPaths, @NotNull MetricsService metricsService) {
+    this.observedPaths = observedPaths;
+    this.configRefs = new PathCache<>(maxSize, generation);
+    this.missingResourcePaths = new PathCache<>(maxSize, generation);
+    this.hitCounter = metricsService.counter(METRICS_PREFIX + ".hits");
+    this.missCounter = metricsService.counter(METRICS_PREFIX + ".misses");
+  }
+
+  /**
+   * @return Current generation, to be read before the lookup whose result is put into the cache
+   */
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * @param contentPath Content path
+   * @param bucketNames Bucket names
+   * @return Cached config references or null if nothing is cached
+   */
+  @Nullable
+  List<String> getConfigRefs(@NotNull String contentPath, @NotNull Collection<String> bucketNames) {
+    Map<String, List<String>> refs = configRefs.get(contentPath);
+    List<String> result = refs != null ? refs.get(toBucketNamesKey(bucketNames)) : null;
+    recordLookup(result != null);
+    return result;
+  }
+
+  /**
+   * @param contentPath Content path
+   * @param bucketNames Bucket names
+   * @param value Config references
+   * @param readGeneration Generation read before config references were detected
+   */
+  void putConfigRefs(@NotNull String contentPath, @NotNull Collection<String> bucketNames, @NotNull List<String> value,
+      long readGeneration) {
+    if (!isAtOrBelowAny(contentPath, observedPaths)) {
+      return;
+    }
+    String key = toBucketNamesKey(bucketNames);
+    Map<String, List<String>> refs = configRefs.get(contentPath);
+    if (refs == null) {
+      refs = new ConcurrentHashMap<>();
+      refs.put(key, value);
+      configRefs.put(contentPath, refs, readGeneration);
+    }
+    else if (generation.get() == readGeneration) {
+      refs.put(key, value);
+      // invalidated concurrently after the check above
+      if (generation.get() != readGeneration) {
+        refs.remove(key, value);
+      }
+    }
+  }
+
+  /**
+   * @param configPath Configuration resource path
+   * @return true if it is known that no resource exists at this path
+   */
+  boolean isKnownMissing(@NotNull String configPath) {
+    boolean missing = missingResourcePaths.get(configPath) != null;
+    recordLookup(missing);
+    return missing;
+  }
+
+  /**
+   * @param configPath Configuration resource path
+   * @param readGeneration Generation read before the lookup of the configuration resource
+   */
+  void putMissing(@NotNull String configPath, long readGeneration) {
+    if (isAtOrBelowAny(configPath, observedPaths)) {
+      missingResourcePaths.put(configPath, Boolean.TRUE, readGeneration);
+    }
+  }
+
+  @Override
+  public void onChange(@NotNull List<ResourceChange> changes) {
+    Set<String> pagePaths = new TreeSet<>();
+    Set<String> addedOrRemovedPaths = new TreeSet<>();
+    for (ResourceChange change : changes) {
+      pagePaths.add(getPagePath(change.getPath()));
+      if (change.getType() != ChangeType.CHANGED) {
+        addedOrRemovedPaths.add(change.getPath());
+      }
+    }
+    invalidate(pagePaths, addedOrRemovedPaths);
+  }
+
+  /**
+   * Invalidates all entries affected by a change at the given path.
+   * @param path Changed path
+   */
+  void invalidate(@NotNull String path) {
+    invalidate(Set.of(getPagePath(path)), Set.of(path));
+  }
+
+  private void invalidate(Set<String> pagePaths, Set<String> addedOrRemovedPaths) {
+    // config references depend on the properties of the containing page and its ancestors
+    invalidateAtOrBelow(configRefs, pagePaths);
+    // existence of a resource only changes if the resource or one of its ancestors is added or removed
+    invalidateAtOrBelow(missingResourcePaths, addedOrRemovedPaths);
+    log.trace("Invalidated resolution cache for {}", pagePaths);
+  }
+
+  /**
+   * @param cache Cache
+   * @param paths Sorted paths
+   */
+  private static void invalidateAtOrBelow(PathCache<?> cache, Set<String> paths) {
+    String lastPath = null;
+    for (String path : paths) {
+      // skip paths already invalidated with an ancestor
+      if (lastPath == null || !isAtOrBelow(path, lastPath)) {
+        cache.invalidateAtOrBelow(path);
+        lastPath = path;
+      }
+    }
+  }
+
+  /**
+   * @param path Path
+   * @return Path of containing page (path without <code>/jcr:content</code> part)
+   */
+  private static String getPagePath(String path) {
+    return StringUtils.substringBefore(path, "/" + JCR_CONTENT);
+  }
+
+  long getHitCount() {
+    return hitCount.get();
+  }
+
+  long getMissCount() {
+    return missCount.get();
+  }
+
+  private void recordLookup(boolean hit) {
+    if (hit) {
+      hitCount.incrementAndGet();
+      hitCounter.increment();
+    }
+    else {
+      missCount.incrementAndGet();
+      missCounter.increment();
+    }
+  }
+
+  private static String toBucketNamesKey(Collection<String> bucketNames) {
+    return String.join("|", bucketNames);
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.PageManager;
+
+/**
+ * Context of a single configuration persistence operation.
+ * <p>
+ * It collects the pages touched while writing configuration data, and updates the last modified date of each
+ * page exactly once with a single timestamp before the changes are committed. Pages confirmed to exist or created
+ * are remembered, so ancestor checks are done only once per write operation.
+ * </p>
+ */
+final class ConfigWriteContext {
+
+  private final ResourceResolver resourceResolver;
+  private final PageManager pageManager;
+  private final TemplateResourceTypeCache templateResourceTypeCache;
+  private final Set<String> touchedPaths = new LinkedHashSet<>();
+  private final Map<String, Resource> existingResources = new HashMap<>();
+
+  ConfigWriteContext(@NotNull ResourceResolver resourceResolver, @NotNull PageManager pageManager) {
+    this(resourceResolver, pageManager, null);
+  }
+
+  ConfigWriteContext(@NotNull ResourceResolver resourceResolver, @NotNull PageManager pageManager,
+      @Nullable TemplateResourceTypeCache templateResourceTypeCache) {
+    this.resourceResolver = resourceResolver;
+    this.pageManager = pageManager;
+    this.templateResourceTypeCache = templateResourceTypeCache;
+  }
+
+  @NotNull
+  ResourceResolver getResourceResolver() {
+    return this.resourceResolver;
+  }
+
+  @NotNull
+  PageManager getPageManager() {
+    return this.pageManager;
+  }
+
+  /**
+   * @param template Template path
+   * @return Resource type defined in template content, or null if template or resource type does not exist
+   */
+  @Nullable
+  String getTemplateResourceType(@NotNull String template) {
+    if (templateResourceTypeCache != null) {
+      return templateResourceTypeCache.getResourceType(resourceResolver, template);
+    }
+    return TemplateResourceTypeCache.readResourceType(resourceResolver, template);
+  }
+
+  /**
+   * Marks the page containing the given path as modified.
+   * @param path Written resource path
+   */
+  void touch(@NotNull String path) {
+    touchedPaths.add(PersistenceUtils.getPagePathCandidate(path));
+  }
+
+  /**
+   * Gets a resource that is known to exist within this write operation, either because it was confirmed to exist
+   * or because it was created. Each path is looked up in the repository only once.
+   * @param path Resource path
+   * @return Resource or null if it does not exist
+   */
+  @Nullable
+  Resource getExistingResource(@NotNull String path) {
+    Resource resource = existingResources.get(path);
+    if (resource == null) {
+      resource = resourceResolver.getResource(path);
+      if (resource != null) {
+        existingResources.put(path, resource);
+      }
+    }
+    return resource;
+  }
+
+  /**
+   * Remembers a resource that was created or confirmed to exist within this write operation.
+   * @param resource Resource
+   */
+  void putExistingResource(@NotNull Resource resource) {
+    existingResources.put(resource.getPath(), resource);
+  }
+
+  /**
+   * Updates last modified date of all touched pages.
+   */
+  void updatePageLastMod() {
+    if (touchedPaths.isEmpty()) {
+      return;
+    }
+    Calendar now = Calendar.getInstance();
+    Object user = resourceResolver.getAttribute(ResourceResolverFactory.USER);
+    Set<String> updatedPagePaths = new HashSet<>();
+    for (String path : touchedPaths) {
+      Page page = pageManager.getContainingPage(path);
+      if (page != null && updatedPagePaths.add(page.getPath())) {
+        PersistenceUtils.updatePageLastMod(page, path, now, user);
+      }
+    }
+    touchedPaths.clear();
+  }
+
+}
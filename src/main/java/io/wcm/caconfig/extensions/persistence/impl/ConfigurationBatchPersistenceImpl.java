@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.caconfig.spi.ConfigurationPersistData;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceStrategy2;
+import org.apache.sling.commons.osgi.Order;
+import org.apache.sling.commons.osgi.RankedServices;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.wcm.caconfig.extensions.persistence.ConfigurationBatchPersistence;
+import io.wcm.caconfig.extensions.persistence.ConfigurationBatchResult;
+
+/**
+ * Dispatches each configuration to the persistence strategy handling it, in the order of the service ranking.
+ * <p>
+ * Configurations handled by a persistence strategy supporting batch persistence are collected and persisted by
+ * that strategy in chunks. All other configurations are offered to the remaining persistence strategies one by one,
+ * as done by the persistence strategy multiplexer, and each of them is committed separately.
+ * The results of all persistence strategies are merged, with chunk indexes counted across all strategies.
+ * </p>
+ */
+@Component(service = ConfigurationBatchPersistence.class)
+public class ConfigurationBatchPersistenceImpl implements ConfigurationBatchPersistence {
+
+  // same order as in the configuration persistence strategy multiplexer
+  private final RankedServices<ConfigurationPersistenceStrategy2> persistenceStrategies = new RankedServices<>(Order.DESCENDING);
+
+  private static final Logger log = LoggerFactory.getLogger(ConfigurationBatchPersistenceImpl.class);
+
+  @Reference(name = "persistenceStrategies", service = ConfigurationPersistenceStrategy2.class,
+      cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+  protected void bindPersistenceStrategy(ConfigurationPersistenceStrategy2 item, Map<String, Object> props) {
+    persistenceStrategies.bind(item, props);
+  }
+
+  protected void unbindPersistenceStrategy(ConfigurationPersistenceStrategy2 item, Map<String, Object> props) {
+    persistenceStrategies.unbind(item, props);
+  }
+
+  @Override
+  public @NotNull ConfigurationBatchResult persistConfigurations(@NotNull ResourceResolver resolver,
+      @NotNull Map<String, ConfigurationPersistData> configurations) {
+    if (resolver.hasChanges()) {
+      throw new ConfigurationPersistenceException("Unable to persist configurations: Resource resolver has pending changes.");
+    }
+    List<ConfigurationPersistenceStrategy2> strategies = persistenceStrategies.getList();
+    ConfigurationBatchResultImpl result = new ConfigurationBatchResultImpl();
+    Map<BatchPersistenceStrategy, Map<String, ConfigurationPersistData>> batches = new LinkedHashMap<>();
+    for (Map.Entry<String, ConfigurationPersistData> entry : configurations.entrySet()) {
+      if (!dispatch(resolver, strategies, entry.getKey(), entry.getValue(), batches, result)) {
+        result.addSkipped(entry.getKey());
+      }
+    }
+    for (Map.Entry<BatchPersistenceStrategy, Map<String, ConfigurationPersistData>> batch : batches.entrySet()) {
+      result.addAll(batch.getKey().persistConfigurations(resolver, batch.getValue()));
+    }
+    return result;
+  }
+
+  /**
+   * Collects the configuration for the first batch persistence strategy accepting it, or persists it with the
+   * first other persistence strategy ranked higher handling it.
+   * @return false if no persistence strategy handles the configuration
+   */
+  private boolean dispatch(ResourceResolver resolver, List<ConfigurationPersistenceStrategy2> strategies,
+      String configResourcePath, ConfigurationPersistData data,
+      Map<BatchPersistenceStrategy, Map<String, ConfigurationPersistData>> batches, ConfigurationBatchResultImpl result) {
+    for (ConfigurationPersistenceStrategy2 strategy : strategies) {
+      if (strategy instanceof BatchPersistenceStrategy) {
+        BatchPersistenceStrategy batchStrategy = (BatchPersistenceStrategy)strategy;
+        if (batchStrategy.acceptsConfigurationResourcePath(configResourcePath)) {
+          batches.computeIfAbsent(batchStrategy, key -> new LinkedHashMap<>()).put(configResourcePath, data);
+          return true;
+        }
+      }
+      else {
+        // each configuration is committed separately by the persistence strategy, so it counts as a chunk
+        try {
+          if (strategy.persistConfiguration(resolver, configResourcePath, data)) {
+            result.addChunk();
+            result.addPersisted(List.of(configResourcePath));
+            return true;
+          }
+        }
+        catch (ConfigurationPersistenceException ex) {
+          log.warn("Unable to persist configuration {}: {}", configResourcePath, ex.getMessage());
+          resolver.revert();
+          result.addFailure(new ConfigurationBatchResultImpl.ChunkFailureImpl(result.addChunk(), List.of(configResourcePath), ex));
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
+import org.jetbrains.annotations.NotNull;
+
+import io.wcm.caconfig.extensions.persistence.ConfigurationBatchResult;
+
+/**
+ * Collects the result of persisting multiple configurations in {@link ConfigBatchWriter}
+ * and {@link ConfigurationBatchPersistenceImpl}.
+ */
+final class ConfigurationBatchResultImpl implements ConfigurationBatchResult {
+
+  private final List<String> persistedPaths = new ArrayList<>();
+  private final List<String> skippedPaths = new ArrayList<>();
+  private final List<ChunkFailure> failures = new ArrayList<>();
+  private int chunkCount;
+
+  /**
+   * @return Index of the added chunk
+   */
+  int addChunk() {
+    return chunkCount++;
+  }
+
+  void addPersisted(List<String> paths) {
+    persistedPaths.addAll(paths);
+  }
+
+  void addSkipped(String path) {
+    skippedPaths.add(path);
+  }
+
+  void addFailure(ChunkFailure failure) {
+    failures.add(failure);
+  }
+
+  /**
+   * Adds the result of another batch, counting its chunks after the chunks of this result.
+   * @param other Other result
+   */
+  void addAll(ConfigurationBatchResultImpl other) {
+    persistedPaths.addAll(other.persistedPaths);
+    skippedPaths.addAll(other.skippedPaths);
+    for (ChunkFailure failure : other.failures) {
+      failures.add(new ChunkFailureImpl(chunkCount + failure.getChunkIndex(), failure.getPaths(), failure.getException()));
+    }
+    chunkCount += other.chunkCount;
+  }
+
+  @Override
+  public @NotNull List<String> getPersistedPaths() {
+    return Collections.unmodifiableList(persistedPaths);
+  }
+
+  @Override
+  public @NotNull List<String> getSkippedPaths() {
+    return Collections.unmodifiableList(skippedPaths);
+  }
+
+  @Override
+  public @NotNull List<ChunkFailure> getFailures() {
+    return Collections.unmodifiableList(failures);
+  }
+
+  @Override
+  public boolean isSuccessful() {
+    return failures.isEmpty();
+  }
+
+  static final class ChunkFailureImpl implements ChunkFailure {
+
+    private final int chunkIndex;
+    private final List<String> paths;
+    private final ConfigurationPersistenceException exception;
+
+    ChunkFailureImpl(int chunkIndex, List<String> paths, ConfigurationPersistenceException exception) {
+      this.chunkIndex = chunkIndex;
+      this.paths = Collections.unmodifiableList(paths);
+      this.exception = exception;
+    }
+
+    @Override
+    public int getChunkIndex() {
+      return this.chunkIndex;
+    }
+
+    @Override
+    public @NotNull List<String> getPaths() {
+      return this.paths;
+    }
+
+    @Override
+    public @NotNull ConfigurationPersistenceException getException() {
+      return this.exception;
+    }
+
+  }
+
+}
@@ -28,9 +28,14 @@ import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.delet
 import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.ensureContainingPage;
 import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.ensurePageIfNotContainingPage;
 import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.getOrCreateResource;
+import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.hasChangedProperties;
+import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.isUnchanged;
 import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.replaceProperties;
 import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.updatePageLastMod;
 
+import java.util.Map;
+import java.util.function.Supplier;
+
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
@@ -38,11 +43,14 @@ import org.apache.sling.caconfig.management.ConfigurationManagementSettings;
 import org.apache.sling.caconfig.spi.ConfigurationCollectionPersistData;
 import org.apache.sling.caconfig.spi.ConfigurationPersistData;
 import org.apache.sling.caconfig.spi.ConfigurationPersistenceStrategy2;
+import org.apache.sling.commons.metrics.MetricsService;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
@@ -53,6 +61,7 @@ import com.day.cq.wcm.api.PageManagerFactory;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+
 /**
  * AEM-specific persistence strategy that has higher precedence than the default strategy from Sling,
  * but lower precedence that the persistence strategy that is part of AEM since version 6.3.
@@ -63,7 +72,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
  */
 @Component(service = ConfigurationPersistenceStrategy2.class)
 @Designate(ocd = PagePersistenceStrategy.Config.class)
-public class PagePersistenceStrategy implements ConfigurationPersistenceStrategy2 {
+public class PagePersistenceStrategy implements ConfigurationPersistenceStrategy2, BatchPersistenceStrategy {
 
   @ObjectClassDefinition(name = "wcm.io Context-Aware Configuration Persistence Strategy: AEM Page",
       description = "Stores Context-Aware Configuration in AEM pages instead of simple resources.")
@@ -81,6 +90,29 @@ public class PagePersistenceStrategy implements ConfigurationPersistenceStrategy
         description = "Priority of persistence strategy (higher = higher priority).")
     int service_ranking() default 1500;
 
+    @AttributeDefinition(name = "Batch commit size",
+        description = "Number of configurations committed together when persisting multiple configurations at once.")
+    int batchCommitSize() default 500;
+
+    @AttributeDefinition(name = "Commit retries",
+        description = "Number of retries if committing configuration changes fails due to conflicting concurrent changes. "
+            + "Before each retry the changes are re-applied to the refreshed repository state. 0 disables retries.")
+    int commitRetries() default 0;
+
+    @AttributeDefinition(name = "Commit retry initial backoff",
+        description = "Delay before the first retry in milliseconds, doubled for each further retry. "
+            + "A random jitter of up to half of the delay is applied.")
+    int commitRetryInitialBackoff() default 50;
+
+    @AttributeDefinition(name = "Commit retry max backoff",
+        description = "Maximum delay between retries in milliseconds.")
+    int commitRetryMaxBackoff() default 1000;
+
+    @AttributeDefinition(name = "Page write locks",
+        description = "Serialize concurrent writes to the same configuration page within this instance, "
+            + "instead of letting them collide when committing.")
+    boolean pageWriteLocksEnabled() default false;
+
   }
 
   private static final String DEFAULT_CONFIG_NODE_TYPE = NT_UNSTRUCTURED;
@@ -89,14 +121,24 @@ public class PagePersistenceStrategy implements ConfigurationPersistenceStrategy
   private ConfigurationManagementSettings configurationManagementSettings;
   @Reference
   private PageManagerFactory pageManagerFactory;
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+  private MetricsService metricsService;
 
   private boolean enabled;
   private String resourceType;
+  private int batchCommitSize;
+  private CommitRetry commitRetry = CommitRetry.NONE;
+  private PageWriteLocks pageWriteLocks;
 
   @Activate
   void activate(Config value) {
     this.enabled = value.enabled();
     this.resourceType = value.resourceType();
+    this.batchCommitSize = value.batchCommitSize();
+    this.commitRetry = new CommitRetry(PagePersistenceStrategy.class.getName() + ".commit",
+        value.commitRetries(), value.commitRetryInitialBackoff(), value.commitRetryMaxBackoff(),
+        metricsService != null ? metricsService : MetricsService.NOOP);
+    this.pageWriteLocks = value.pageWriteLocksEnabled() ? new PageWriteLocks(PageWriteLocks.DEFAULT_STRIPES) : null;
   }
 
   @Override
@@ -172,47 +214,87 @@ public class PagePersistenceStrategy implements ConfigurationPersistenceStrategy
   }
 
   @Override
-  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
   public boolean persistConfiguration(@NotNull ResourceResolver resolver, @NotNull String configResourcePath, @NotNull ConfigurationPersistData data) {
-    if (!enabled) {
+    return executeWrite(resolver, configResourcePath, () -> doPersistConfiguration(resolver, configResourcePath, data));
+  }
+
+  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
+  private boolean doPersistConfiguration(ResourceResolver resolver, String configResourcePath, ConfigurationPersistData data) {
+    ConfigWriteContext writeContext = new ConfigWriteContext(resolver, pageManagerFactory.getPageManager(resolver));
+    if (!writeConfiguration(writeContext, configResourcePath, data)) {
       return false;
     }
-    String path = getResourcePath(configResourcePath);
-    ensureContainingPage(resolver, path, resourceType, configurationManagementSettings);
+    if (isUnchanged(resolver, configResourcePath)) {
+      return true;
+    }
+    writeContext.updatePageLastMod();
+    commit(resolver, configResourcePath);
+    return true;
+  }
 
-    getOrCreateResource(resolver, path, DEFAULT_CONFIG_NODE_TYPE, data.getProperties(), configurationManagementSettings);
+  @Override
+  public boolean acceptsConfigurationResourcePath(@NotNull String configResourcePath) {
+    return enabled;
+  }
 
+  @Override
+  public @NotNull ConfigurationBatchResultImpl persistConfigurations(@NotNull ResourceResolver resolver,
+      @NotNull Map<String, ConfigurationPersistData> configurations) {
     PageManager pageManager = pageManagerFactory.getPageManager(resolver);
-    updatePageLastMod(resolver, pageManager, path);
-    commit(resolver, configResourcePath);
+    return ConfigBatchWriter.persist(resolver, () -> new ConfigWriteContext(resolver, pageManager),
+        configurations, batchCommitSize, this::writeConfiguration, commitRetry, pageWriteLocks);
+  }
+
+  /**
+   * Writes configuration data without committing.
+   * @return false if this persistence strategy is disabled
+   */
+  private boolean writeConfiguration(ConfigWriteContext writeContext, String configResourcePath, ConfigurationPersistData data) {
+    if (!enabled) {
+      return false;
+    }
+    ResourceResolver resolver = writeContext.getResourceResolver();
+    String path = getResourcePath(configResourcePath);
+    ensureContainingPage(writeContext, path, resourceType, configurationManagementSettings);
+    getOrCreateResource(resolver, path, DEFAULT_CONFIG_NODE_TYPE, data.getProperties(), configurationManagementSettings);
+    writeContext.touch(path);
     return true;
   }
 
   @Override
-  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
   public boolean persistConfigurationCollection(@NotNull ResourceResolver resolver, @NotNull String configResourceCollectionParentPath,
       @NotNull ConfigurationCollectionPersistData data) {
+    return executeWrite(resolver, configResourceCollectionParentPath,
+        () -> doPersistConfigurationCollection(resolver, configResourceCollectionParentPath, data));
+  }
+
+  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
+  private boolean doPersistConfigurationCollection(ResourceResolver resolver, String configResourceCollectionParentPath,
+      ConfigurationCollectionPersistData data) {
     if (!enabled) {
       return false;
     }
 
-    PageManager pageManager = pageManagerFactory.getPageManager(resolver);
+    ConfigWriteContext writeContext = new ConfigWriteContext(resolver, pageManagerFactory.getPageManager(resolver));
 
     // create page for collection parent
     String parentPath = getCollectionParentResourcePath(configResourceCollectionParentPath);
-    ensurePageIfNotContainingPage(resolver, parentPath, resourceType, configurationManagementSettings);
+    ensurePageIfNotContainingPage(writeContext, parentPath, resourceType, configurationManagementSettings);
     Resource configResourceParent = getOrCreateResource(resolver, parentPath, DEFAULT_CONFIG_NODE_TYPE, ValueMap.EMPTY, configurationManagementSettings);
-    updatePageLastMod(resolver, pageManager, parentPath);
 
     // delete existing children no longer in the list
     deleteChildrenNotInCollection(configResourceParent, data);
 
-    // create new or overwrite existing children
+    // create new or overwrite existing children, leave unchanged children untouched
     for (ConfigurationPersistData item : data.getItems()) {
       String path = getCollectionItemResourcePath(parentPath + "/" + item.getCollectionItemName());
-      ensureContainingPage(resolver, path, resourceType, configurationManagementSettings);
+      Resource itemResource = resolver.getResource(path);
+      if (itemResource != null && !hasChangedProperties(itemResource, item.getProperties(), configurationManagementSettings)) {
+        continue;
+      }
+      ensureContainingPage(writeContext, path, resourceType, configurationManagementSettings);
       getOrCreateResource(resolver, path, DEFAULT_CONFIG_NODE_TYPE, item.getProperties(), configurationManagementSettings);
-      updatePageLastMod(resolver, pageManager, path);
+      writeContext.touch(path);
     }
 
     // if resource collection parent properties are given replace them as well
@@ -225,6 +307,11 @@ public class PagePersistenceStrategy implements ConfigurationPersistenceStrategy
         replaceProperties(configResourceParent, data.getProperties(), configurationManagementSettings);
       }
     }
+    if (isUnchanged(resolver, configResourceCollectionParentPath)) {
+      return true;
+    }
+    writeContext.touch(parentPath);
+    writeContext.updatePageLastMod();
 
     commit(resolver, configResourceCollectionParentPath);
     return true;
@@ -232,6 +319,10 @@ public class PagePersistenceStrategy implements ConfigurationPersistenceStrategy
 
   @Override
   public boolean deleteConfiguration(@NotNull ResourceResolver resolver, @NotNull String configResourcePath) {
+    return executeWrite(resolver, configResourcePath, () -> doDeleteConfiguration(resolver, configResourcePath));
+  }
+
+  private boolean doDeleteConfiguration(ResourceResolver resolver, String configResourcePath) {
     if (!enabled) {
       return false;
     }
@@ -239,10 +330,24 @@ public class PagePersistenceStrategy implements ConfigurationPersistenceStrategy
     if (configResource != null) {
       deletePageOrResource(configResource);
     }
+    if (isUnchanged(resolver, configResourcePath)) {
+      return true;
+    }
     PageManager pageManager = pageManagerFactory.getPageManager(resolver);
     updatePageLastMod(resolver, pageManager, configResourcePath);
     commit(resolver, configResourcePath);
     return true;
   }
 
+  /**
+   * Executes the write operation and retries it on commit conflicts. Each attempt holds the page write lock
+   * (if enabled), which is released while waiting before the next attempt.
+   */
+  private boolean executeWrite(ResourceResolver resolver, String configResourcePath, Supplier<Boolean> operation) {
+    if (pageWriteLocks != null) {
+      return commitRetry.execute(resolver, () -> pageWriteLocks.execute(configResourcePath, operation));
+    }
+    return commitRetry.execute(resolver, operation);
+  }
+
 }
@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Striped in-JVM locks for serializing concurrent writes to the same configuration page.
+ * <p>
+ * Concurrent writes to the same page within one JVM would otherwise only collide when committing. Each page path
+ * is mapped to one of a fixed number of locks, so writes to different pages usually run in parallel. Writes to
+ * different pages only wait for each other if their paths map to the same lock.
+ * </p>
+ */
+final class PageWriteLocks {
+
+  static final int DEFAULT_STRIPES = 64;
+
+  private final ReentrantLock[] locks;
+
+  PageWriteLocks(int stripes) {
+    this.locks = new ReentrantLock[Math.max(stripes, 1)];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Executes the write operation while holding the lock of the page containing the given path.
+   * @param configResourcePath Configuration resource path
+   * @param operation Write operation
+   * @param <T> Result type
+   * @return Result of the write operation
+   */
+  <T> T execute(@NotNull String configResourcePath, @NotNull Supplier<T> operation) {
+    return execute(List.of(configResourcePath), operation);
+  }
+
+  /**
+   * Executes the write operation while holding the locks of all pages containing the given paths.
+   * The locks are always acquired in the same order to avoid deadlocks.
+   * @param configResourcePaths Configuration resource paths
+   * @param operation Write operation
+   * @param <T> Result type
+   * @return Result of the write operation
+   */
+  <T> T execute(@NotNull Collection<String> configResourcePaths, @NotNull Supplier<T> operation) {
+    TreeSet<Integer> stripes = new TreeSet<>();
+    for (String configResourcePath : configResourcePaths) {
+      stripes.add(getStripe(configResourcePath));
+    }
+    Deque<ReentrantLock> acquired = new ArrayDeque<>();
+    try {
+      for (int stripe : stripes) {
+        locks[stripe].lock();
+        acquired.push(locks[stripe]);
+      }
+      return operation.get();
+    }
+    finally {
+      while (!acquired.isEmpty()) {
+        acquired.pop().unlock();
+      }
+    }
+  }
+
+  /**
+   * @param configResourcePath Configuration resource path
+   * @return Index of the lock for the page containing the given path
+   */
+  int getStripe(@NotNull String configResourcePath) {
+    int hash = PersistenceUtils.getPagePathCandidate(configResourcePath).hashCode();
+    // spread higher bits, paths often only differ in their last characters
+    hash ^= hash >>> 16;
+    return Math.floorMod(hash, locks.length);
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Matches resource paths against the path expressions configured for {@link ToolsConfigPagePersistenceStrategy}.
+ * <p>
+ * If the expression consists of a plain path it is matched via string comparison without allocating any objects,
+ * otherwise it falls back to a regular expression.
+ * </p>
+ */
+final class PathPattern {
+
+  private static final String REGEX_META_CHARS = "\\.[]{}()<>*+-=!?^$|";
+  private static final Pattern PREFIX_EXPRESSION = Pattern.compile("^\\^([^()]+)\\(/\\.\\+\\)\\$$");
+
+  private enum Mode {
+    /** Path contains literal as segment sequence, followed by end of path or a child path */
+    CONTAINS_SEGMENTS,
+    /** Path is a child path of literal */
+    CHILD_OF_PREFIX,
+    /** Regular expression */
+    REGEX
+  }
+
+  private final Mode mode;
+  private final String literal;
+  private final Pattern pattern;
+
+  private PathPattern(Mode mode, String literal, Pattern pattern) {
+    this.mode = mode;
+    this.literal = literal;
+    this.pattern = pattern;
+  }
+
+  /**
+   * Creates a pattern equivalent to the regular expression <code>^.*&lt;relativeConfigPath&gt;(/.*)?$</code>.
+   * @param relativeConfigPath Relative config path
+   * @return Path pattern
+   */
+  static @NotNull PathPattern forRelativeConfigPath(@NotNull String relativeConfigPath) {
+    if (isLiteral(relativeConfigPath)) {
+      return new PathPattern(Mode.CONTAINS_SEGMENTS, relativeConfigPath, null);
+    }
+    return new PathPattern(Mode.REGEX, null, Pattern.compile(String.format("^.*%s(/.*)?$", relativeConfigPath)));
+  }
+
+  /**
+   * Creates a pattern for the given regular expression. Expressions in the form <code>^/literal/path(/.+)$</code> are
+   * matched without regular expression.
+   * @param regex Regular expression
+   * @return Path pattern
+   */
+  static @NotNull PathPattern forRegex(@NotNull String regex) {
+    Matcher matcher = PREFIX_EXPRESSION.matcher(regex);
+    if (matcher.matches() && isLiteral(matcher.group(1))) {
+      return new PathPattern(Mode.CHILD_OF_PREFIX, matcher.group(1) + "/", null);
+    }
+    return new PathPattern(Mode.REGEX, null, Pattern.compile(regex));
+  }
+
+  /**
+   * @param path Resource path
+   * @return true if path matches
+   */
+  boolean matches(@NotNull String path) {
+    switch (mode) {
+      case CONTAINS_SEGMENTS:
+        return containsSegments(path);
+      case CHILD_OF_PREFIX:
+        return path.length() > literal.length() && path.startsWith(literal) && !containsLineTerminator(path, literal.length());
+      default:
+        return pattern.matcher(path).matches();
+    }
+  }
+
+  private boolean containsSegments(String path) {
+    int index = path.indexOf(literal);
+    while (index >= 0) {
+      int end = index + literal.length();
+      if (end == path.length() || path.charAt(end) == '/') {
+        // '.' in regex does not match line terminators
+        return !containsLineTerminator(path, 0);
+      }
+      index = path.indexOf(literal, index + 1);
+    }
+    return false;
+  }
+
+  private static boolean containsLineTerminator(String path, int fromIndex) {
+    for (int i = fromIndex; i < path.length(); i++) {
+      char c = path.charAt(i);
+      if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param expression Expression
+   * @return true if the expression contains no regular expression meta characters
+   */
+  static boolean isLiteral(String expression) {
+    return StringUtils.isNotEmpty(expression) && StringUtils.containsNone(expression, REGEX_META_CHARS)
+        && !containsLineTerminator(expression, 0);
+  }
+
+}
@@ -26,18 +26,23 @@ import java.util.Calendar;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import javax.jcr.InvalidItemStateException;
+
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.caconfig.management.ConfigurationManagementSettings;
 import org.apache.sling.caconfig.spi.ConfigurationCollectionPersistData;
 import org.apache.sling.caconfig.spi.ConfigurationPersistData;
@@ -72,25 +77,38 @@ final class PersistenceUtils {
     return JCR_CONTENT_PATTERN.matcher(path).matches();
   }
 
+  /**
+   * Gets the path of the page containing the given path, if the path points inside a page content resource.
+   * @param path Resource path
+   * @return Path before <code>/jcr:content</code>, or the given path if it does not contain a page content resource
+   */
+  static String getPagePathCandidate(String path) {
+    Matcher matcher = PAGE_PATH_PATTERN.matcher(path);
+    if (matcher.matches()) {
+      return matcher.group(1);
+    }
+    return path;
+  }
+
   /**
    * Ensure that a containing page exists for the given path inside a content page.
    * If no containing page exists a page is created with the path before /jcr:content/*.
    * If the path does not contain /jcr:content nothing is done.
-   * @param resolver Resource resolver
+   * @param writeContext Write context
    * @param configResourcePath Configuration resource path
    * @param resourceType Resource type for page (if not template is set)
    * @param configurationManagementSettings Configuration management settings
    */
-  public static void ensureContainingPage(ResourceResolver resolver, String configResourcePath,
+  public static void ensureContainingPage(ConfigWriteContext writeContext, String configResourcePath,
       String resourceType, ConfigurationManagementSettings configurationManagementSettings) {
-    ensureContainingPage(resolver, configResourcePath, null, resourceType, null, configurationManagementSettings);
+    ensureContainingPage(writeContext, configResourcePath, null, resourceType, null, configurationManagementSettings);
   }
 
   /**
    * Ensure that a containing page exists for the given path inside a content page.
    * If no containing page exists a page is created with the path before /jcr:content/*.
    * If the path does not contain /jcr:content nothing is done.
-   * @param resolver Resource resolver
+   * @param writeContext Write context
    * @param configResourcePath Configuration resource path
    * @param template Template for page
    * @param resourceType Resource type for page (if not template is set)
@@ -98,7 +116,7 @@ final class PersistenceUtils {
    * @param configurationManagementSettings Configuration management settings
    */
   @SuppressWarnings("PMD.UseObjectForClearerAPI")
-  public static void ensureContainingPage(ResourceResolver resolver, String configResourcePath,
+  public static void ensureContainingPage(ConfigWriteContext writeContext, String configResourcePath,
       String template, String resourceType, String parentTemplate,
       ConfigurationManagementSettings configurationManagementSettings) {
     Matcher matcher = PAGE_PATH_PATTERN.matcher(configResourcePath);
@@ -106,55 +124,64 @@ final class PersistenceUtils {
       return;
     }
     String pagePath = matcher.group(1);
-    ensurePage(resolver, pagePath, template, resourceType, parentTemplate, configurationManagementSettings);
+    ensurePage(writeContext, pagePath, template, resourceType, parentTemplate, configurationManagementSettings);
   }
 
   /**
    * Ensure that a page at the given path exists, if the path is not already contained in a page.
-   * @param resolver Resource resolver
+   * @param writeContext Write context
    * @param pagePath Page path
    * @param resourceType Resource type for page (if not template is set)
    * @param configurationManagementSettings Configuration management settings
    * @return Resource for AEM page or resource inside a page.
    */
-  public static Resource ensurePageIfNotContainingPage(ResourceResolver resolver, String pagePath,
+  public static Resource ensurePageIfNotContainingPage(ConfigWriteContext writeContext, String pagePath,
       String resourceType, ConfigurationManagementSettings configurationManagementSettings) {
     Matcher matcher = PAGE_PATH_PATTERN.matcher(pagePath);
     if (matcher.matches()) {
       // ensure that shorted path part that ends with /jcr:content is created as AEM page (if not existent already)
       String detectedPagePath = matcher.group(1);
-      ensurePage(resolver, detectedPagePath, null, resourceType, null, configurationManagementSettings);
-      return getOrCreateResource(resolver, pagePath, DEFAULT_FOLDER_NODE_TYPE_IN_PAGE, null, configurationManagementSettings);
+      ensurePage(writeContext, detectedPagePath, null, resourceType, null, configurationManagementSettings);
+      return getOrCreateResource(writeContext.getResourceResolver(), pagePath, DEFAULT_FOLDER_NODE_TYPE_IN_PAGE, null,
+          configurationManagementSettings);
     }
-    return ensurePage(resolver, pagePath, null, resourceType, null, configurationManagementSettings);
+    return ensurePage(writeContext, pagePath, null, resourceType, null, configurationManagementSettings);
   }
 
-  private static Resource ensurePage(ResourceResolver resolver, String pagePath,
+  private static Resource ensurePage(ConfigWriteContext writeContext, String pagePath,
       String template, String resourceType, String parentTemplate,
       ConfigurationManagementSettings configurationManagementSettings) {
-    // check if page or resource already exists
-    Resource resource = resolver.getResource(pagePath);
+    // check if page or resource already exists - pages confirmed to exist or created are remembered within the write operation
+    Resource resource = writeContext.getExistingResource(pagePath);
     if (resource != null) {
       return resource;
     }
+    ResourceResolver resolver = writeContext.getResourceResolver();
 
     // ensure parent page or resource exists
     String parentPath = ResourceUtil.getParent(pagePath);
     String pageName = ResourceUtil.getName(pagePath);
     Resource parentResource;
     if (StringUtils.isNotEmpty(parentTemplate)) {
-      parentResource = ensurePage(resolver, parentPath, parentTemplate, null, parentTemplate, configurationManagementSettings);
+      parentResource = ensurePage(writeContext, parentPath, parentTemplate, null, parentTemplate, configurationManagementSettings);
     }
     else {
-      parentResource = getOrCreateResource(resolver, parentPath, DEFAULT_FOLDER_NODE_TYPE, null, configurationManagementSettings);
+      parentResource = writeContext.getExistingResource(parentPath);
+      if (parentResource == null) {
+        parentResource = getOrCreateResource(resolver, parentPath, DEFAULT_FOLDER_NODE_TYPE, null, configurationManagementSettings);
+        writeContext.putExistingResource(parentResource);
+      }
     }
 
     // create page
-    return createPage(resolver, parentResource, pageName, template, resourceType);
+    Resource pageResource = createPage(writeContext, parentResource, pageName, template, resourceType);
+    writeContext.putExistingResource(pageResource);
+    return pageResource;
   }
 
-  private static Resource createPage(ResourceResolver resolver, Resource parentResource, String pageName,
+  private static Resource createPage(ConfigWriteContext writeContext, Resource parentResource, String pageName,
       String template, String resourceType) {
+    ResourceResolver resolver = writeContext.getResourceResolver();
     String pagePath = parentResource.getPath() + "/" + pageName;
     log.trace("! Create cq:Page node at {}", pagePath);
     try {
@@ -167,7 +194,7 @@ final class PersistenceUtils {
       props = new HashMap<>();
       props.put(JcrConstants.JCR_PRIMARYTYPE, "cq:PageContent");
       if (StringUtils.isNotEmpty(template)) {
-        applyPageTemplate(resolver, props, pageName, template);
+        applyPageTemplate(writeContext, props, pageName, template);
       }
       if (StringUtils.isNotEmpty(resourceType) && props.get(PROPERTY_RESOURCE_TYPE) == null) {
         props.put(PROPERTY_RESOURCE_TYPE, resourceType);
@@ -181,7 +208,7 @@ final class PersistenceUtils {
     }
   }
 
-  private static void applyPageTemplate(ResourceResolver resolver, Map<String, Object> props, String pageName, String template) {
+  private static void applyPageTemplate(ConfigWriteContext writeContext, Map<String, Object> props, String pageName, String template) {
     // set template
     props.put(NameConstants.PN_TEMPLATE, template);
 
@@ -189,9 +216,9 @@ final class PersistenceUtils {
     props.put(JcrConstants.JCR_TITLE, pageName);
 
     // get sling:resourceType from template definition
-    Resource templateContentResource = resolver.getResource(template + "/" + JCR_CONTENT);
-    if (templateContentResource != null) {
-      props.put(PROPERTY_RESOURCE_TYPE, templateContentResource.getValueMap().get(PROPERTY_RESOURCE_TYPE, String.class));
+    String templateResourceType = writeContext.getTemplateResourceType(template);
+    if (templateResourceType != null) {
+      props.put(PROPERTY_RESOURCE_TYPE, templateResourceType);
     }
   }
 
@@ -226,7 +253,38 @@ final class PersistenceUtils {
     }
   }
 
-  public static void replaceProperties(Resource resource, Map<String, Object> properties,
+  /**
+   * Checks if an existing resource needs to be updated to match the given properties.
+   * @param resource Existing resource
+   * @param properties Properties
+   * @param configurationManagementSettings Configuration management settings
+   * @return true if any property that is not ignored would be added, changed or removed
+   */
+  public static boolean hasChangedProperties(Resource resource, Map<String, Object> properties,
+      ConfigurationManagementSettings configurationManagementSettings) {
+    ValueMap valueMap = resource.getValueMap();
+    Set<String> existingPropertyNames = new HashSet<>(valueMap.keySet());
+    PropertiesFilterUtil.removeIgnoredProperties(existingPropertyNames, configurationManagementSettings);
+    if (!properties.keySet().containsAll(existingPropertyNames)) {
+      return true;
+    }
+    for (Map.Entry<String, Object> property : properties.entrySet()) {
+      if (!Objects.deepEquals(valueMap.get(property.getKey()), property.getValue())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Replaces all properties of the given resource that are not ignored by the given properties.
+   * Only properties that are added, changed or removed are written.
+   * @param resource Resource
+   * @param properties Properties
+   * @param configurationManagementSettings Configuration management settings
+   * @return true if any property was written
+   */
+  public static boolean replaceProperties(Resource resource, Map<String, Object> properties,
       ConfigurationManagementSettings configurationManagementSettings) {
     if (log.isTraceEnabled()) {
       log.trace("! Store properties for resource {}: {}", resource.getPath(), properties);
@@ -236,14 +294,29 @@ final class PersistenceUtils {
       throw new ConfigurationPersistenceAccessDeniedException("No write access: Unable to store configuration data to " + resource.getPath() + ".");
     }
 
-    // remove all existing properties that are not filtered
+    boolean changed = false;
+
+    // remove all existing properties that are not filtered and not contained in new properties
     Set<String> propertyNamesToRemove = new HashSet<>(modValueMap.keySet());
     PropertiesFilterUtil.removeIgnoredProperties(propertyNamesToRemove, configurationManagementSettings);
+    propertyNamesToRemove.removeAll(properties.keySet());
     for (String propertyName : propertyNamesToRemove) {
       modValueMap.remove(propertyName);
+      changed = true;
     }
 
-    modValueMap.putAll(properties);
+    // write only added or changed properties
+    for (Map.Entry<String, Object> property : properties.entrySet()) {
+      if (!Objects.deepEquals(modValueMap.get(property.getKey()), property.getValue())) {
+        modValueMap.put(property.getKey(), property.getValue());
+        changed = true;
+      }
+    }
+
+    if (!changed) {
+      log.trace("! Properties unchanged for resource {}", resource.getPath());
+    }
+    return changed;
   }
 
   public static void updatePageLastMod(ResourceResolver resolver, PageManager pageManager, String configResourcePath) {
@@ -251,6 +324,10 @@ final class PersistenceUtils {
     if (page == null) {
       return;
     }
+    updatePageLastMod(page, configResourcePath, Calendar.getInstance(), resolver.getAttribute(ResourceResolverFactory.USER));
+  }
+
+  static void updatePageLastMod(Page page, String configResourcePath, Calendar now, Object user) {
     Resource contentResource = page.getContentResource();
     if (contentResource != null) {
       ModifiableValueMap contentProps = contentResource.adaptTo(ModifiableValueMap.class);
@@ -258,9 +335,6 @@ final class PersistenceUtils {
         throw new ConfigurationPersistenceAccessDeniedException("No write access: Unable to update page " + configResourcePath + ".");
       }
 
-      Object user = resolver.getAttribute(ResourceResolverFactory.USER);
-      Calendar now = Calendar.getInstance();
-
       contentProps.put(NameConstants.PN_LAST_MOD, now);
       contentProps.put(NameConstants.PN_LAST_MOD_BY, user);
 
@@ -272,6 +346,21 @@ final class PersistenceUtils {
     }
   }
 
+  /**
+   * Checks if writing the configuration resulted in any changes. If not, updating the page last modified date
+   * and committing can be skipped to avoid unnecessary repository writes and observation events.
+   * @param resolver Resource resolver
+   * @param configResourcePath Configuration resource path
+   * @return true if the resource resolver has no pending changes
+   */
+  public static boolean isUnchanged(ResourceResolver resolver, String configResourcePath) {
+    if (resolver.hasChanges()) {
+      return false;
+    }
+    log.trace("! No changes for configuration {}", configResourcePath);
+    return true;
+  }
+
   public static void commit(ResourceResolver resourceResolver, String relatedResourcePath) {
     try {
       resourceResolver.commit();
@@ -281,6 +370,32 @@ final class PersistenceUtils {
     }
   }
 
+  /**
+   * Checks if the given exception was caused by conflicting concurrent changes in the repository,
+   * e.g. an Oak merge conflict on commit.
+   * @param ex Exception
+   * @return true if a cause of the exception indicates a conflict
+   */
+  public static boolean isConflict(Throwable ex) {
+    Throwable cause = ex;
+    while (cause != null) {
+      if (cause instanceof InvalidItemStateException
+          || (cause instanceof CommitFailedException && isConflict((CommitFailedException)cause))) {
+        return true;
+      }
+      cause = cause.getCause() != cause ? cause.getCause() : null;
+    }
+    return false;
+  }
+
+  /**
+   * @return true for OakState0001 (unresolved conflicts) and all OakMerge failures (merging concurrent changes failed)
+   */
+  private static boolean isConflict(CommitFailedException ex) {
+    return (ex.isOfType(CommitFailedException.STATE) && ex.getCode() == 1)
+        || ex.isOfType(CommitFailedException.MERGE);
+  }
+
   /**
    * If the given resource points to an AEM page, delete the page using PageManager.
    * Otherwise delete the resource using ResourceResolver.
@@ -319,7 +434,7 @@ final class PersistenceUtils {
   }
 
   private static ConfigurationPersistenceException convertPersistenceException(String message, PersistenceException ex) {
-    if (StringUtils.equals(ex.getCause().getClass().getName(), "javax.jcr.AccessDeniedException")) {
+    if (ex.getCause() != null && StringUtils.equals(ex.getCause().getClass().getName(), "javax.jcr.AccessDeniedException")) {
       // detect if commit failed due to read-only access to repository
       return new ConfigurationPersistenceAccessDeniedException("No write access: " + message, ex);
     }
@@ -19,8 +19,13 @@
  */
 package io.wcm.caconfig.extensions.persistence.impl;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
+import org.apache.commons.collections4.map.LRUMap;
 import org.apache.sling.caconfig.management.ConfigurationManagementSettings;
 
 /**
@@ -28,12 +33,47 @@ import org.apache.sling.caconfig.management.ConfigurationManagementSettings;
  */
 final class PropertiesFilterUtil {
 
+    private static final int IGNORED_PROPERTY_NAMES_MAX_SIZE = 10000;
+
+    /*
+     * Whether a property name is ignored, memoized per settings service instance. Each property name is matched against
+     * the ignore patterns only once. A changed configuration of the settings service results in a new service instance,
+     * so weak keys ensure the entries of the previous instance are discarded.
+     */
+    private static final Map<ConfigurationManagementSettings, Map<String, Boolean>> IGNORED_PROPERTY_NAMES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     private PropertiesFilterUtil() {
         // static methods only
     }
 
     public static void removeIgnoredProperties(Set<String> propertyNames, ConfigurationManagementSettings settings) {
-        Set<String> ignoredProperties = settings.getIgnoredPropertyNames(propertyNames);
+        Map<String, Boolean> ignoredPropertyNames = IGNORED_PROPERTY_NAMES.computeIfAbsent(settings,
+                key -> Collections.synchronizedMap(new LRUMap<>(IGNORED_PROPERTY_NAMES_MAX_SIZE)));
+
+        Set<String> ignoredProperties = new HashSet<>();
+        Set<String> unknownPropertyNames = new HashSet<>();
+        for (String propertyName : propertyNames) {
+            Boolean ignored = ignoredPropertyNames.get(propertyName);
+            if (ignored == null) {
+                unknownPropertyNames.add(propertyName);
+            }
+            else if (ignored) {
+                ignoredProperties.add(propertyName);
+            }
+        }
+
+        if (!unknownPropertyNames.isEmpty()) {
+            Set<String> ignoredUnknownProperties = settings.getIgnoredPropertyNames(unknownPropertyNames);
+            for (String propertyName : unknownPropertyNames) {
+                boolean ignored = ignoredUnknownProperties.contains(propertyName);
+                ignoredPropertyNames.put(propertyName, ignored);
+                if (ignored) {
+                    ignoredProperties.add(propertyName);
+                }
+            }
+        }
+
         propertyNames.removeAll(ignoredProperties);
     }
 
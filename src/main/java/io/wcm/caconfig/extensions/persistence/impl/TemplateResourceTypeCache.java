@@ -0,0 +1,136 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
+import static org.apache.sling.api.resource.ResourceResolver.PROPERTY_RESOURCE_TYPE;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the <code>sling:resourceType</code> defined in the content of page templates, which is applied to
+ * configuration pages created with this template.
+ * <p>
+ * Only templates below <code>/apps</code> and editable templates below
+ * <code>/conf/*&#47;settings/wcm/templates</code> are cached. All entries are invalidated on any change below these paths.
+ * </p>
+ */
+final class TemplateResourceTypeCache implements ResourceChangeListener, ExternalResourceChangeListener {
+
+  static final String SUBSERVICE_NAME = "config-templates";
+
+  static final String[] OBSERVED_PATHS = {
+      "/apps",
+      "glob:/conf/*/settings/wcm/templates/**"
+  };
+
+  private final Map<String, String> resourceTypes = new HashMap<>();
+  private long generation;
+
+  private static final Logger log = LoggerFactory.getLogger(TemplateResourceTypeCache.class);
+
+  /**
+   * @param resourceResolver Resource resolver
+   * @param template Template path
+   * @return Resource type defined in template content, or null if template or resource type does not exist
+   */
+  @Nullable
+  String getResourceType(@NotNull ResourceResolver resourceResolver, @NotNull String template) {
+    long readGeneration;
+    synchronized (this) {
+      String resourceType = resourceTypes.get(template);
+      if (resourceType != null) {
+        return resourceType;
+      }
+      readGeneration = generation;
+    }
+    String resourceType = readResourceType(resourceResolver, template);
+    // only resolved resource types are cached, missing templates are looked up again on next access
+    if (resourceType != null && isObserved(template)) {
+      synchronized (this) {
+        // do not store result if cache was invalidated meanwhile
+        if (readGeneration == generation) {
+          resourceTypes.put(template, resourceType);
+        }
+      }
+    }
+    return resourceType;
+  }
+
+  /**
+   * Resolves the given templates in advance.
+   * @param resourceResolver Resource resolver
+   * @param templates Template paths
+   */
+  void preload(@NotNull ResourceResolver resourceResolver, String... templates) {
+    for (String template : templates) {
+      if (StringUtils.isNotEmpty(template)) {
+        log.debug("Preload template {}: {}", template, getResourceType(resourceResolver, template));
+      }
+    }
+  }
+
+  static @Nullable String readResourceType(@NotNull ResourceResolver resourceResolver, @NotNull String template) {
+    Resource templateContentResource = resourceResolver.getResource(template + "/" + JCR_CONTENT);
+    if (templateContentResource == null) {
+      return null;
+    }
+    return templateContentResource.getValueMap().get(PROPERTY_RESOURCE_TYPE, String.class);
+  }
+
+  @Override
+  public void onChange(@NotNull List<ResourceChange> changes) {
+    invalidate();
+  }
+
+  synchronized void invalidate() {
+    generation++;
+    resourceTypes.clear();
+  }
+
+  private static boolean isObserved(String template) {
+    if (template.startsWith("/apps/")) {
+      return true;
+    }
+    // editable templates: /conf/<name>/settings/wcm/templates/<template>
+    if (!template.startsWith("/conf/")) {
+      return false;
+    }
+    String[] segments = StringUtils.split(template, '/');
+    return segments.length > 5
+        && StringUtils.equals(segments[2], "settings")
+        && StringUtils.equals(segments[3], "wcm")
+        && StringUtils.equals(segments[4], "templates");
+  }
+
+}
@@ -19,44 +19,72 @@
  */
 package io.wcm.caconfig.extensions.persistence.impl;
 
+import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
 import static com.day.cq.commons.jcr.JcrConstants.NT_UNSTRUCTURED;
 import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.commit;
 import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.deleteChildrenNotInCollection;
 import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.deletePageOrResource;
 import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.ensureContainingPage;
 import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.getOrCreateResource;
+import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.hasChangedProperties;
+import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.isUnchanged;
 import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.replaceProperties;
-import static io.wcm.caconfig.extensions.persistence.impl.PersistenceUtils.updatePageLastMod;
 
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import org.apache.commons.collections4.IteratorUtils;
 import org.apache.commons.collections4.PredicateUtils;
 import org.apache.commons.collections4.iterators.FilterIterator;
 import org.apache.commons.collections4.iterators.TransformIterator;
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.apache.sling.caconfig.management.ConfigurationManagementSettings;
+import org.apache.sling.caconfig.management.ConfigurationResourceResolverConfig;
 import org.apache.sling.caconfig.management.multiplexer.ContextPathStrategyMultiplexer;
 import org.apache.sling.caconfig.resource.spi.ConfigurationResourceResolvingStrategy;
 import org.apache.sling.caconfig.resource.spi.ContextResource;
 import org.apache.sling.caconfig.spi.ConfigurationCollectionPersistData;
 import org.apache.sling.caconfig.spi.ConfigurationPersistData;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
 import org.apache.sling.caconfig.spi.ConfigurationPersistenceStrategy2;
+import org.apache.sling.commons.metrics.Gauge;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.commons.scheduler.Scheduler;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
@@ -67,6 +95,8 @@ import com.day.cq.wcm.api.PageManager;
 import com.day.cq.wcm.api.PageManagerFactory;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.wcm.caconfig.extensions.persistence.ConfigurationResourceBatchResolvingStrategy;
+import io.wcm.sling.commons.request.RequestContext;
 
 /**
  * AEM-specific persistence strategy that gets only active if a context path is redirected to path
@@ -74,9 +104,12 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
  * In this case the configuration date is stored in a single page at /tools/config which can be easily activated by
  * editors via the authoring GUI, and the configuration can neatly be packaged together with the content.
  */
-@Component(service = { ConfigurationPersistenceStrategy2.class, ConfigurationResourceResolvingStrategy.class })
+@Component(service = { ConfigurationPersistenceStrategy2.class, ConfigurationResourceResolvingStrategy.class,
+    ConfigurationResourceBatchResolvingStrategy.class })
 @Designate(ocd = ToolsConfigPagePersistenceStrategy.Config.class)
-public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersistenceStrategy2, ConfigurationResourceResolvingStrategy {
+public class ToolsConfigPagePersistenceStrategy
+    implements ConfigurationPersistenceStrategy2, ConfigurationResourceResolvingStrategy, ConfigurationResourceBatchResolvingStrategy,
+    BatchPersistenceStrategy {
 
   @ObjectClassDefinition(name = "wcm.io Context-Aware Configuration Persistence Strategy: Tools Config Page",
       description = "Stores Context-Aware Configuration in a single AEM content page at /tools/config.")
@@ -106,46 +139,231 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
             description = "Expression to match context paths. Context paths matching this expression are allowed.")
     String contextPathRegex() default "^/content(/.+)$";
 
+    @AttributeDefinition(name = "Resolution cache",
+        description = "Enable cross-request cache for detected config references and missing configuration resources. "
+            + "The cache is invalidated via resource change events. It assumes all users have read access to the same "
+            + "configuration resources, which is usually the case on publish.")
+    boolean resolutionCacheEnabled() default false;
+
+    @AttributeDefinition(name = "Resolution cache size",
+        description = "Maximum number of entries in the resolution cache (per entry type).")
+    int resolutionCacheMaxSize() default 10000;
+
+    @AttributeDefinition(name = "Resolution cache paths",
+        description = "Paths observed for invalidating the resolution cache. Only content paths and configuration resources "
+            + "below these paths are cached.")
+    String[] resolutionCachePaths() default { "/content", "/conf" };
+
+    @AttributeDefinition(name = "Config page index",
+        description = "Build an in-memory index of all configuration pages below the index paths on activation, "
+            + "kept up to date via resource change events. Requires a service user mapping for subservice 'config-index' "
+            + "with read access to the index paths, and a plain relative config path.")
+    boolean configIndexEnabled() default false;
+
+    @AttributeDefinition(name = "Config page index paths",
+        description = "Root paths that are traversed for building the config page index.")
+    String[] configIndexPaths() default { "/content" };
+
+    @AttributeDefinition(name = "Batch commit size",
+        description = "Number of configurations committed together when persisting multiple configurations at once.")
+    int batchCommitSize() default 500;
+
+    @AttributeDefinition(name = "Commit retries",
+        description = "Number of retries if committing configuration changes fails due to conflicting concurrent changes. "
+            + "Before each retry the changes are re-applied to the refreshed repository state. 0 disables retries.")
+    int commitRetries() default 0;
+
+    @AttributeDefinition(name = "Commit retry initial backoff",
+        description = "Delay before the first retry in milliseconds, doubled for each further retry. "
+            + "A random jitter of up to half of the delay is applied.")
+    int commitRetryInitialBackoff() default 50;
+
+    @AttributeDefinition(name = "Commit retry max backoff",
+        description = "Maximum delay between retries in milliseconds.")
+    int commitRetryMaxBackoff() default 1000;
+
+    @AttributeDefinition(name = "Page write locks",
+        description = "Serialize concurrent writes to the same configuration page within this instance, "
+            + "instead of letting them collide when committing.")
+    boolean pageWriteLocksEnabled() default false;
+
+    @AttributeDefinition(name = "Collection chunk size",
+        description = "Configuration collections with more items are written in chunks of this size, each committed separately. "
+            + "New items are staged inside the configuration page and applied together with changed and removed items at once when complete. "
+            + "Interrupted write operations continue with the remaining items when repeated with the same data. 0 disables chunking.")
+    int collectionChunkSize() default 0;
+
   }
 
   private static final String DEFAULT_CONFIG_NODE_TYPE = NT_UNSTRUCTURED;
   private static final String PROPERTY_CONFIG_COLLECTION_INHERIT = "sling:configCollectionInherit";
+  private static final int CONFIG_REFS_MEMO_MAX_SIZE = 1000;
+  private static final String CONFIG_REFS_MEMO_ATTRIBUTE = ToolsConfigPagePersistenceStrategy.class.getName() + ".configRefsMemo";
+  private static final String DEFAULT_CONFIG_BUCKET_NAME = "sling:configs";
+  private static final String CONFIG_PAGE_INDEX_JOB_NAME = ToolsConfigPagePersistenceStrategy.class.getName() + ".configPageIndex";
 
   private static final Logger log = LoggerFactory.getLogger(ToolsConfigPagePersistenceStrategy.class);
 
   private boolean enabled;
-  private Pattern configPathPattern;
-  private Pattern contextPathPattern;
+  private PathPattern configPathPattern;
+  private PathPattern contextPathPattern;
   private Config config;
 
+  private ConfigResolutionCache resolutionCache;
+  private ConfigPageIndex configPageIndex;
+  private TemplateResourceTypeCache templateResourceTypeCache;
+  private CommitRetry commitRetry = CommitRetry.NONE;
+  private PageWriteLocks pageWriteLocks;
+  private PageWriteLocks collectionWriteLocks;
+  private final List<ServiceRegistration<?>> serviceRegistrations = new ArrayList<>();
+
   @Reference
   private ContextPathStrategyMultiplexer contextPathStrategy;
   @Reference
   private ConfigurationManagementSettings configurationManagementSettings;
   @Reference
   private PageManagerFactory pageManagerFactory;
+  @Reference
+  private ResourceResolverFactory resourceResolverFactory;
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+  private MetricsService metricsService;
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+  private ConfigurationResourceResolverConfig configurationResourceResolverConfig;
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+  private RequestContext requestContext;
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+  private Scheduler scheduler;
 
   // --- ConfigurationPersitenceStrategy ---
 
   @Activate
-  void activate(Config value) {
+  void activate(BundleContext bundleContext, Config value) {
     this.enabled = value.enabled();
     this.configPathPattern = loadConfigPathPattern(value);
     this.contextPathPattern = loadContextPathPattern(value);
     this.config = value;
+    this.commitRetry = new CommitRetry(ToolsConfigPagePersistenceStrategy.class.getName() + ".commit",
+        value.commitRetries(), value.commitRetryInitialBackoff(), value.commitRetryMaxBackoff(),
+        metricsService != null ? metricsService : MetricsService.NOOP);
+    this.pageWriteLocks = value.pageWriteLocksEnabled() ? new PageWriteLocks(PageWriteLocks.DEFAULT_STRIPES) : null;
+    // chunked collection writes of the same collection are always serialized within this instance
+    if (pageWriteLocks != null) {
+      this.collectionWriteLocks = pageWriteLocks;
+    }
+    else {
+      this.collectionWriteLocks = value.collectionChunkSize() > 0 ? new PageWriteLocks(PageWriteLocks.DEFAULT_STRIPES) : null;
+    }
+
+    if (enabled) {
+      templateResourceTypeCache = new TemplateResourceTypeCache();
+      registerResourceChangeListener(bundleContext, templateResourceTypeCache, TemplateResourceTypeCache.OBSERVED_PATHS,
+          ChangeType.ADDED, ChangeType.CHANGED, ChangeType.REMOVED);
+      preloadTemplates(value);
+    }
+
+    if (enabled && value.resolutionCacheEnabled() && value.resolutionCachePaths() != null) {
+      resolutionCache = new ConfigResolutionCache(value.resolutionCacheMaxSize(), value.resolutionCachePaths(),
+          metricsService != null ? metricsService : MetricsService.NOOP);
+      registerResourceChangeListener(bundleContext, resolutionCache, value.resolutionCachePaths(),
+          ChangeType.ADDED, ChangeType.CHANGED, ChangeType.REMOVED);
+    }
+
+    activateConfigPageIndex(bundleContext, value);
+  }
+
+  private void activateConfigPageIndex(BundleContext bundleContext, Config value) {
+    String[] observedPaths = value.resolutionCacheEnabled() && value.resolutionCachePaths() != null
+        ? value.resolutionCachePaths() : new String[0];
+    String[] indexPaths = new String[0];
+    if (value.configIndexEnabled() && value.configIndexPaths() != null) {
+      if (PathPattern.isLiteral(value.relativeConfigPath())) {
+        indexPaths = value.configIndexPaths();
+      }
+      else {
+        log.warn("Config page index is not supported for relative config path: {}", value.relativeConfigPath());
+      }
+    }
+    if (!enabled || (observedPaths.length == 0 && indexPaths.length == 0)) {
+      return;
+    }
+    configPageIndex = new ConfigPageIndex(getConfigBucketNames(), value.resolutionCacheMaxSize(), observedPaths,
+        resourceResolverFactory, indexPaths.length > 0 ? value.relativeConfigPath() : null, indexPaths,
+        metricsService != null ? metricsService : MetricsService.NOOP);
+    registerResourceChangeListener(bundleContext, configPageIndex, ArrayUtils.addAll(observedPaths, indexPaths),
+        ChangeType.ADDED, ChangeType.REMOVED);
+    if (indexPaths.length > 0) {
+      configPageIndex.getGauges().forEach((name, gauge) -> registerGauge(bundleContext, name, gauge));
+      if (scheduler != null) {
+        scheduler.schedule((Runnable)configPageIndex::build, scheduler.NOW()
+            .name(CONFIG_PAGE_INDEX_JOB_NAME)
+            .canRunConcurrently(false));
+      }
+      else {
+        log.warn("Unable to build configuration page index: Scheduler service not available.");
+      }
+    }
+  }
+
+  private void registerGauge(BundleContext bundleContext, String name, Gauge<?> gauge) {
+    Dictionary<String, Object> props = new Hashtable<>();
+    props.put(Gauge.NAME, name);
+    serviceRegistrations.add(bundleContext.registerService(Gauge.class, gauge, props));
+  }
+
+  private void preloadTemplates(Config value) {
+    if (StringUtils.isAllEmpty(value.configPageTemplate(), value.structurePageTemplate())) {
+      return;
+    }
+    try (ResourceResolver resourceResolver = resourceResolverFactory.getServiceResourceResolver(
+        Map.of(ResourceResolverFactory.SUBSERVICE, TemplateResourceTypeCache.SUBSERVICE_NAME))) {
+      templateResourceTypeCache.preload(resourceResolver, value.configPageTemplate(), value.structurePageTemplate());
+    }
+    catch (LoginException ex) {
+      log.debug("Unable to preload templates: {}", ex.getMessage());
+    }
   }
 
-  private @Nullable Pattern loadConfigPathPattern(Config value) {
+  private Collection<String> getConfigBucketNames() {
+    if (configurationResourceResolverConfig != null) {
+      return new LinkedHashSet<>(configurationResourceResolverConfig.configBucketNames());
+    }
+    return Collections.singleton(DEFAULT_CONFIG_BUCKET_NAME);
+  }
+
+  private void registerResourceChangeListener(BundleContext bundleContext, ResourceChangeListener listener,
+      String[] paths, ChangeType... changeTypes) {
+    Dictionary<String, Object> props = new Hashtable<>();
+    props.put(ResourceChangeListener.PATHS, paths);
+    props.put(ResourceChangeListener.CHANGES, Arrays.stream(changeTypes).map(ChangeType::name).toArray(String[]::new));
+    serviceRegistrations.add(bundleContext.registerService(ResourceChangeListener.class, listener, props));
+  }
+
+  @Deactivate
+  void deactivate() {
+    serviceRegistrations.forEach(ServiceRegistration::unregister);
+    serviceRegistrations.clear();
+    resolutionCache = null;
+    templateResourceTypeCache = null;
+    if (configPageIndex != null) {
+      if (scheduler != null) {
+        scheduler.unschedule(CONFIG_PAGE_INDEX_JOB_NAME);
+      }
+      configPageIndex.cancel();
+      configPageIndex = null;
+    }
+  }
+
+  private @Nullable PathPattern loadConfigPathPattern(Config value) {
     String relativeConfigPath = value.relativeConfigPath();
     return enabled && StringUtils.isNotBlank(relativeConfigPath)
-            ? Pattern.compile(String.format("^.*%s(/.*)?$", relativeConfigPath))
+            ? PathPattern.forRelativeConfigPath(relativeConfigPath)
             : null;
   }
 
-  private @Nullable Pattern loadContextPathPattern(Config value) {
+  private @Nullable PathPattern loadContextPathPattern(Config value) {
     String contextPathRegex = value.contextPathRegex();
     return enabled && StringUtils.isNotBlank(contextPathRegex)
-            ? Pattern.compile(contextPathRegex)
+            ? PathPattern.forRegex(contextPathRegex)
             : null;
   }
 
@@ -204,31 +422,89 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
   }
 
   @Override
-  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
   public boolean persistConfiguration(@NotNull ResourceResolver resolver, @NotNull String configResourcePath,
       @NotNull ConfigurationPersistData data) {
-    if (!enabled || !isConfigPagePath(configResourcePath)) {
+    return executeWrite(resolver, configResourcePath, () -> doPersistConfiguration(resolver, configResourcePath, data));
+  }
+
+  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
+  private boolean doPersistConfiguration(ResourceResolver resolver, String configResourcePath, ConfigurationPersistData data) {
+    ConfigWriteContext writeContext = newWriteContext(resolver, pageManagerFactory.getPageManager(resolver));
+    if (!writeConfiguration(writeContext, configResourcePath, data)) {
       return false;
     }
-    String path = getResourcePath(configResourcePath);
-    ensureContainingPage(resolver, path, config.configPageTemplate(), null, config.structurePageTemplate(), configurationManagementSettings);
+    if (isUnchanged(resolver, configResourcePath)) {
+      return true;
+    }
+    writeContext.updatePageLastMod();
+    commit(resolver, configResourcePath);
+    afterCommit(resolver, configResourcePath);
+    return true;
+  }
 
-    getOrCreateResource(resolver, path, DEFAULT_CONFIG_NODE_TYPE, data.getProperties(), configurationManagementSettings);
+  @Override
+  public boolean acceptsConfigurationResourcePath(@NotNull String configResourcePath) {
+    return enabled && isConfigPagePath(configResourcePath);
+  }
 
+  @Override
+  public @NotNull ConfigurationBatchResultImpl persistConfigurations(@NotNull ResourceResolver resolver,
+      @NotNull Map<String, ConfigurationPersistData> configurations) {
     PageManager pageManager = pageManagerFactory.getPageManager(resolver);
-    updatePageLastMod(resolver, pageManager, path);
-    commit(resolver, configResourcePath);
+    ConfigurationBatchResultImpl result = ConfigBatchWriter.persist(resolver, () -> newWriteContext(resolver, pageManager),
+        configurations, config.batchCommitSize(),
+        this::writeConfiguration, commitRetry, pageWriteLocks);
+    for (String configResourcePath : result.getPersistedPaths()) {
+      afterCommit(resolver, configResourcePath);
+    }
+    return result;
+  }
+
+  private ConfigWriteContext newWriteContext(ResourceResolver resolver, PageManager pageManager) {
+    return new ConfigWriteContext(resolver, pageManager, templateResourceTypeCache);
+  }
+
+  /**
+   * Writes configuration data without committing.
+   * @return false if the configuration resource path is not handled by this persistence strategy
+   */
+  private boolean writeConfiguration(ConfigWriteContext writeContext, String configResourcePath, ConfigurationPersistData data) {
+    if (!enabled || !isConfigPagePath(configResourcePath)) {
+      return false;
+    }
+    ResourceResolver resolver = writeContext.getResourceResolver();
+    String path = getResourcePath(configResourcePath);
+    ensureContainingPage(writeContext, path, config.configPageTemplate(), null, config.structurePageTemplate(), configurationManagementSettings);
+    getOrCreateResource(resolver, path, DEFAULT_CONFIG_NODE_TYPE, data.getProperties(), configurationManagementSettings);
+    writeContext.touch(path);
     return true;
   }
 
   @Override
   public boolean persistConfigurationCollection(@NotNull ResourceResolver resolver, @NotNull String configResourceCollectionParentPath,
       @NotNull ConfigurationCollectionPersistData data) {
+    return executeWrite(resolver, configResourceCollectionParentPath,
+        () -> doPersistConfigurationCollection(resolver, configResourceCollectionParentPath, data));
+  }
+
+  private boolean doPersistConfigurationCollection(ResourceResolver resolver, String configResourceCollectionParentPath,
+      ConfigurationCollectionPersistData data) {
     if (!enabled || !isConfigPagePath(configResourceCollectionParentPath)) {
       return false;
     }
-    ensureContainingPage(resolver, configResourceCollectionParentPath, config.configPageTemplate(), null, config.structurePageTemplate(),
+    boolean chunked = config.collectionChunkSize() > 0 && data.getItems().size() > config.collectionChunkSize();
+    if (chunked && resolver.hasChanges()) {
+      // chunks are committed separately, which would commit foreign changes as well
+      throw new ConfigurationPersistenceException("Unable to write configuration collection in chunks to "
+          + configResourceCollectionParentPath + ": Resource resolver has pending changes.");
+    }
+    ConfigWriteContext writeContext = newWriteContext(resolver, pageManagerFactory.getPageManager(resolver));
+    ensureContainingPage(writeContext, configResourceCollectionParentPath, config.configPageTemplate(), null, config.structurePageTemplate(),
         configurationManagementSettings);
+    if (chunked) {
+      persistConfigurationCollectionChunked(writeContext, configResourceCollectionParentPath, data);
+      return true;
+    }
     Resource configResourceParent = getOrCreateResource(resolver, configResourceCollectionParentPath, DEFAULT_CONFIG_NODE_TYPE, ValueMap.EMPTY,
         configurationManagementSettings);
 
@@ -236,6 +512,11 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
     deleteChildrenNotInCollection(configResourceParent, data);
     for (ConfigurationPersistData item : data.getItems()) {
       String path = configResourceParent.getPath() + "/" + item.getCollectionItemName();
+      Resource itemResource = configResourceParent.getChild(item.getCollectionItemName());
+      if (itemResource != null && !hasChangedProperties(itemResource, item.getProperties(), configurationManagementSettings)) {
+        log.trace("! Skip unchanged collection item {}", path);
+        continue;
+      }
       getOrCreateResource(resolver, path, DEFAULT_CONFIG_NODE_TYPE, item.getProperties(), configurationManagementSettings);
     }
 
@@ -243,15 +524,75 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
     if (data.getProperties() != null) {
       replaceProperties(configResourceParent, data.getProperties(), configurationManagementSettings);
     }
+    if (isUnchanged(resolver, configResourceCollectionParentPath)) {
+      return true;
+    }
 
-    PageManager pageManager = pageManagerFactory.getPageManager(resolver);
-    updatePageLastMod(resolver, pageManager, configResourceCollectionParentPath);
+    writeContext.touch(configResourceCollectionParentPath);
+    writeContext.updatePageLastMod();
     commit(resolver, configResourceCollectionParentPath);
+    afterCommit(resolver, configResourceCollectionParentPath);
+    return true;
+  }
+
+  private void persistConfigurationCollectionChunked(ConfigWriteContext writeContext, String configResourceCollectionParentPath,
+      ConfigurationCollectionPersistData data) {
+    ResourceResolver resolver = writeContext.getResourceResolver();
+    if (isCollectionUnchanged(resolver.getResource(configResourceCollectionParentPath), data)) {
+      log.trace("! No changes for configuration collection {}", configResourceCollectionParentPath);
+      return;
+    }
+    ChunkedCollectionWriter writer = new ChunkedCollectionWriter(resolver, config.collectionChunkSize(), configurationManagementSettings);
+    collectionWriteLocks.execute(configResourceCollectionParentPath, () -> {
+      writer.stage(configResourceCollectionParentPath, data);
+      writer.swap(configResourceCollectionParentPath, data);
+
+      writeContext.touch(configResourceCollectionParentPath);
+      writeContext.updatePageLastMod();
+      commit(resolver, configResourceCollectionParentPath);
+      return null;
+    });
+    afterCommit(resolver, configResourceCollectionParentPath);
+    writer.purge(configResourceCollectionParentPath);
+  }
+
+  private boolean isCollectionUnchanged(Resource configResourceParent, ConfigurationCollectionPersistData data) {
+    if (configResourceParent == null
+        || (data.getProperties() != null && hasChangedProperties(configResourceParent, data.getProperties(), configurationManagementSettings))) {
+      return false;
+    }
+    Set<String> childNames = new HashSet<>();
+    configResourceParent.getChildren().forEach(child -> childNames.add(child.getName()));
+    childNames.remove(JCR_CONTENT);
+    if (childNames.size() != data.getItems().size()) {
+      return false;
+    }
+    for (ConfigurationPersistData item : data.getItems()) {
+      Resource itemResource = configResourceParent.getChild(item.getCollectionItemName());
+      if (itemResource == null || hasChangedProperties(itemResource, item.getProperties(), configurationManagementSettings)) {
+        return false;
+      }
+    }
     return true;
   }
 
   @Override
   public boolean deleteConfiguration(@NotNull ResourceResolver resolver, @NotNull String configResourcePath) {
+    return executeWrite(resolver, configResourcePath, () -> doDeleteConfiguration(resolver, configResourcePath));
+  }
+
+  /**
+   * Executes the write operation and retries it on commit conflicts. Each attempt holds the page write lock
+   * (if enabled), which is released while waiting before the next attempt.
+   */
+  private boolean executeWrite(ResourceResolver resolver, String configResourcePath, Supplier<Boolean> operation) {
+    if (pageWriteLocks != null) {
+      return commitRetry.execute(resolver, () -> pageWriteLocks.execute(configResourcePath, operation));
+    }
+    return commitRetry.execute(resolver, operation);
+  }
+
+  private boolean doDeleteConfiguration(ResourceResolver resolver, String configResourcePath) {
     if (!enabled || !isConfigPagePath(configResourcePath)) {
       return false;
     }
@@ -259,14 +600,37 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
     if (resource != null) {
       deletePageOrResource(resource);
     }
-    PageManager pageManager = pageManagerFactory.getPageManager(resolver);
-    updatePageLastMod(resolver, pageManager, configResourcePath);
+    if (isUnchanged(resolver, configResourcePath)) {
+      return true;
+    }
+    ConfigWriteContext writeContext = newWriteContext(resolver, pageManagerFactory.getPageManager(resolver));
+    writeContext.touch(configResourcePath);
+    writeContext.updatePageLastMod();
     commit(resolver, configResourcePath);
+    afterCommit(resolver, configResourcePath);
     return true;
   }
 
+  /**
+   * Invalidates the caches affected by a configuration write. Must only be called after the changes were committed
+   * successfully, so the caches never reflect uncommitted changes that may be reverted.
+   */
+  private void afterCommit(ResourceResolver resolver, String configResourcePath) {
+    Map<String, List<String>> memo = getConfigRefsMemo(resolver, false);
+    if (memo != null) {
+      memo.clear();
+    }
+    // invalidate synchronously to make the changes visible instantly, and not only after the change event is received
+    if (resolutionCache != null) {
+      resolutionCache.invalidate(configResourcePath);
+    }
+    if (configPageIndex != null) {
+      configPageIndex.update(configResourcePath);
+    }
+  }
+
   private boolean isConfigPagePath(String configPath) {
-    return configPathPattern != null && configPathPattern.matcher(configPath).matches();
+    return configPathPattern != null && configPathPattern.matches(configPath);
   }
 
 
@@ -274,8 +638,75 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
 
   /**
    * Searches the resource hierarchy upwards for all config references and returns them.
+   * The result is memoized for the current request, if the start resource was resolved by the request's resource resolver.
    */
-  private Iterator<String> findConfigRefs(@NotNull final Resource startResource, @NotNull final Collection<String> bucketNames) {
+  private List<String> findConfigRefs(@NotNull final Resource startResource, @NotNull final Collection<String> bucketNames) {
+    ResourceResolver resourceResolver = startResource.getResourceResolver();
+    String key = startResource.getPath() + "|" + String.join("|", bucketNames);
+    // resource resolvers with pending changes bypass the memo and cache, see getResolutionCache
+    boolean cacheable = !resourceResolver.hasChanges();
+    Map<String, List<String>> memo = cacheable ? getConfigRefsMemo(resourceResolver, true) : null;
+    List<String> configRefs = memo != null ? memo.get(key) : null;
+    ConfigResolutionCache cache = cacheable ? resolutionCache : null;
+    long cacheGeneration = cache != null ? cache.getGeneration() : 0;
+    if (configRefs == null && cache != null) {
+      configRefs = cache.getConfigRefs(startResource.getPath(), bucketNames);
+      if (configRefs != null && memo != null) {
+        memo.put(key, configRefs);
+      }
+    }
+    if (configRefs == null) {
+      configRefs = Collections.unmodifiableList(IteratorUtils.toList(findConfigRefsInternal(startResource, bucketNames)));
+      if (memo != null) {
+        memo.put(key, configRefs);
+      }
+      if (cache != null) {
+        cache.putConfigRefs(startResource.getPath(), bucketNames, configRefs, cacheGeneration);
+      }
+    }
+    else {
+      log.trace("Reuse config references for {}: {}", startResource.getPath(), configRefs);
+    }
+    return configRefs;
+  }
+
+  /**
+   * Gets the config references memo of the current request. The memo is only used for the resource resolver of the
+   * request, so long-lived resource resolvers (e.g. service resource resolvers which are refreshed) never see stale
+   * config references.
+   * @param resourceResolver Resource resolver
+   * @param create Create memo if it does not exist yet
+   * @return Memo or null if not inside a request or the resource resolver is not the request's resource resolver
+   */
+  @SuppressWarnings("unchecked")
+  private @Nullable Map<String, List<String>> getConfigRefsMemo(@NotNull ResourceResolver resourceResolver, boolean create) {
+    SlingHttpServletRequest request = requestContext != null ? requestContext.getThreadRequest() : null;
+    if (request == null || request.getResourceResolver() != resourceResolver) {
+      return null;
+    }
+    Map<String, List<String>> memo = (Map<String, List<String>>)request.getAttribute(CONFIG_REFS_MEMO_ATTRIBUTE);
+    if (memo == null && create) {
+      memo = Collections.synchronizedMap(new LRUMap<>(CONFIG_REFS_MEMO_MAX_SIZE));
+      request.setAttribute(CONFIG_REFS_MEMO_ATTRIBUTE, memo);
+    }
+    return memo;
+  }
+
+  /**
+   * Gets the resolution cache for lookups with the given resource resolver. Resource resolvers with pending changes
+   * (e.g. while writing configuration, or after a failed commit before the changes are reverted) bypass the cache,
+   * so entries are never populated from uncommitted state, and uncommitted changes are never hidden by cached entries.
+   * @param resourceResolver Resource resolver
+   * @return Resolution cache or null if not enabled or not usable for this resource resolver
+   */
+  private @Nullable ConfigResolutionCache getResolutionCache(@NotNull ResourceResolver resourceResolver) {
+    if (resolutionCache == null || resourceResolver.hasChanges()) {
+      return null;
+    }
+    return resolutionCache;
+  }
+
+  private Iterator<String> findConfigRefsInternal(@NotNull final Resource startResource, @NotNull final Collection<String> bucketNames) {
 
     // collect all context path resources (but filter out those without config reference)
     final Iterator<ContextResource> contextResources = new FilterIterator<>(contextPathStrategy.findContextResources(startResource),
@@ -315,13 +746,43 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
   }
 
   private boolean isContextPathAllowed(String contextPath) {
-    return contextPathPattern == null || contextPathPattern.matcher(contextPath).matches();
+    return contextPathPattern == null || contextPathPattern.matches(contextPath);
   }
 
   private String buildResourcePath(String path, String name) {
     return ResourceUtil.normalize(path + "/" + name);
   }
 
+  /**
+   * Gets configuration resource for the given config reference, bucket name and config name.
+   * Lookups for resources that are known to not exist are skipped when the resolution cache is enabled.
+   */
+  private Resource getConfigResource(final ResourceResolver resourceResolver, final String path,
+      final String bucketName, final String configName) {
+    if (configPageIndex != null && !configPageIndex.mayExist(path, bucketName, configName)) {
+      log.trace("- Skip lookup of config resource not contained in config page index: {}/{}/{}", path, bucketName, configName);
+      return null;
+    }
+    String configPath = buildResourcePath(path, bucketName + "/" + configName);
+    ConfigResolutionCache cache = getResolutionCache(resourceResolver);
+    long cacheGeneration = cache != null ? cache.getGeneration() : 0;
+    if (cache != null && cache.isKnownMissing(configPath)) {
+      log.trace("- Skip lookup of config resource known to be missing: {}", configPath);
+      return null;
+    }
+    Resource resource = resourceResolver.getResource(configPath);
+    if (resource != null) {
+      log.trace("+ Found config resource: {}", configPath);
+    }
+    else {
+      log.trace("- No config resource found: {}", configPath);
+      if (cache != null) {
+        cache.putMissing(configPath, cacheGeneration);
+      }
+    }
+    return resource;
+  }
+
   @Override
   public Resource getResource(@NotNull final Resource contentResource, @NotNull final Collection<String> bucketNames, @NotNull final String configName) {
     Iterator<Resource> resources = getResourceInheritanceChain(contentResource, bucketNames, configName);
@@ -338,16 +799,10 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
     Iterator<Resource> matchingResources = IteratorUtils.transformedIterator(paths,
         path -> {
           for (String bucketName : bucketNames) {
-            final String name = bucketName + "/" + configName;
-            final String configPath = buildResourcePath(path, name);
-            Resource resource = resourceResolver.getResource(configPath);
+            Resource resource = getConfigResource(resourceResolver, path, bucketName, configName);
             if (resource != null) {
-              log.trace("+ Found matching config resource for inheritance chain: {}", configPath);
               return resource;
             }
-            else {
-              log.trace("- No matching config resource for inheritance chain: {}", configPath);
-            }
           }
           return null;
         });
@@ -366,10 +821,59 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
     }
     final ResourceResolver resourceResolver = contentResource.getResourceResolver();
 
-    Iterator<String> paths = findConfigRefs(contentResource, bucketNames);
+    Iterator<String> paths = findConfigRefs(contentResource, bucketNames).iterator();
     return getResourceInheritanceChainInternal(bucketNames, configName, paths, resourceResolver);
   }
 
+  /**
+   * Get the inheritance chains for multiple configuration names of the same content resource in a single pass.
+   * The config references are detected only once, and each bucket resource of each config reference is looked up
+   * only once for all configuration names.
+   */
+  @Override
+  public @Nullable Map<String, Iterator<Resource>> getResourceInheritanceChains(@NotNull Resource contentResource,
+      @NotNull Collection<String> bucketNames, @NotNull Collection<String> configNames) {
+    if (!isEnabledAndParamsValid(contentResource, bucketNames, null)) {
+      return null;
+    }
+    final ResourceResolver resourceResolver = contentResource.getResourceResolver();
+    final List<String> configRefs = findConfigRefs(contentResource, bucketNames);
+
+    final Map<String, List<Resource>> chains = new LinkedHashMap<>();
+    for (String path : configRefs) {
+      Collection<String> pendingConfigNames = new ArrayList<>(configNames);
+      for (String bucketName : bucketNames) {
+        if (configPageIndex != null && !configPageIndex.mayExist(path, bucketName)) {
+          log.trace("- Skip lookup of bucket not contained in index: {}/{}", path, bucketName);
+          continue;
+        }
+        Resource bucket = resourceResolver.getResource(buildResourcePath(path, bucketName));
+        if (bucket == null) {
+          log.trace("- No bucket resource found: {}/{}", path, bucketName);
+          continue;
+        }
+        // first bucket containing a configuration name wins on each level
+        Iterator<String> pendingConfigNamesIterator = pendingConfigNames.iterator();
+        while (pendingConfigNamesIterator.hasNext()) {
+          String configName = pendingConfigNamesIterator.next();
+          if (configPageIndex != null && !configPageIndex.mayExist(path, bucketName, configName)) {
+            continue;
+          }
+          Resource resource = bucket.getChild(configName);
+          if (resource != null) {
+            log.trace("+ Found config resource: {}", resource.getPath());
+            chains.computeIfAbsent(configName, name -> new ArrayList<>()).add(resource);
+            pendingConfigNamesIterator.remove();
+          }
+        }
+      }
+    }
+
+    final Map<String, Iterator<Resource>> result = new LinkedHashMap<>();
+    chains.forEach((configName, chain) -> result.put(configName, chain.iterator()));
+    return result;
+  }
+
   private Collection<Resource> getResourceCollectionInternal(final Collection<String> bucketNames, final String configName,
       Iterator<String> paths, ResourceResolver resourceResolver) {
 
@@ -381,15 +885,10 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
 
       Resource item = null;
       for (String bucketName : bucketNames) {
-        String name = bucketName + "/" + configName;
-        String configPath = buildResourcePath(path, name);
-        item = resourceResolver.getResource(configPath);
+        item = getConfigResource(resourceResolver, path, bucketName, configName);
         if (item != null) {
           break;
         }
-        else {
-          log.trace("- No collection parent resource found: {}", configPath);
-        }
       }
 
       if (item != null) {
@@ -423,7 +922,7 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
     if (!isEnabledAndParamsValid(contentResource, bucketNames, configName)) {
       return null;
     }
-    Iterator<String> paths = findConfigRefs(contentResource, bucketNames);
+    Iterator<String> paths = findConfigRefs(contentResource, bucketNames).iterator();
     Collection<Resource> result = getResourceCollectionInternal(bucketNames, configName, paths, contentResource.getResourceResolver());
     if (!result.isEmpty()) {
       return result;
@@ -440,22 +939,159 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
     if (!isEnabledAndParamsValid(contentResource, bucketNames, configName)) {
       return null;
     }
-    final ResourceResolver resourceResolver = contentResource.getResourceResolver();
-    final List<String> paths = IteratorUtils.toList(findConfigRefs(contentResource, bucketNames));
+    final CollectionLevels levels = new CollectionLevels(contentResource.getResourceResolver(), bucketNames, configName,
+        findConfigRefs(contentResource, bucketNames));
 
     // get resource collection with respect to collection inheritance
-    Collection<Resource> resourceCollection = getResourceCollectionInternal(bucketNames, configName, paths.iterator(), resourceResolver);
-
-    // get inheritance chain for each item found
-    // yes, this resolves the closest item twice, but is the easiest solution to combine both logic aspects
-    Iterator<Iterator<Resource>> result = IteratorUtils.transformedIterator(resourceCollection.iterator(),
-        item -> getResourceInheritanceChainInternal(bucketNames, configName + "/" + item.getName(), paths.iterator(), resourceResolver));
-    if (result.hasNext()) {
-      return IteratorUtils.toList(result);
+    final Map<String, Resource> resourceCollection = new LinkedHashMap<>();
+    for (int levelIndex = 0; levelIndex < levels.size(); levelIndex++) {
+      List<CollectionParent> parents = levels.get(levelIndex);
+      if (parents.isEmpty()) {
+        continue;
+      }
+      CollectionParent item = parents.get(0);
+      log.trace("o Check children of collection parent resource: {}", item.resource.getPath());
+      for (Resource child : item.getChildren().values()) {
+        if (isValidResourceCollectionItem(child) && !resourceCollection.containsKey(child.getName())) {
+          log.trace("+ Found collection resource item {}", child.getPath());
+          resourceCollection.put(child.getName(), child);
+        }
+      }
+      // check collection inheritance mode on current level - should we check on next-highest level as well?
+      if (!item.resource.getValueMap().get(PROPERTY_CONFIG_COLLECTION_INHERIT, false)) {
+        break;
+      }
     }
-    else {
+    if (resourceCollection.isEmpty()) {
       return null;
     }
+
+    // inheritance chain of each item is resolved lazily when iterated
+    final Collection<String> itemNames = resourceCollection.keySet();
+    return new AbstractCollection<Iterator<Resource>>() {
+      @Override
+      public Iterator<Iterator<Resource>> iterator() {
+        return IteratorUtils.transformedIterator(itemNames.iterator(), itemName -> new ItemInheritanceChain(levels, itemName));
+      }
+      @Override
+      public int size() {
+        return itemNames.size();
+      }
+    };
+  }
+
+  /**
+   * Collection parent resources of all config references, looked up lazily level by level and shared between the
+   * inheritance chains of all collection items.
+   */
+  private final class CollectionLevels {
+
+    private final ResourceResolver resourceResolver;
+    private final Collection<String> bucketNames;
+    private final String configName;
+    private final List<String> paths;
+    private final List<List<CollectionParent>> levels = new ArrayList<>();
+
+    CollectionLevels(ResourceResolver resourceResolver, Collection<String> bucketNames, String configName, List<String> paths) {
+      this.resourceResolver = resourceResolver;
+      this.bucketNames = bucketNames;
+      this.configName = configName;
+      this.paths = paths;
+    }
+
+    int size() {
+      return paths.size();
+    }
+
+    List<CollectionParent> get(int index) {
+      while (levels.size() <= index) {
+        String path = paths.get(levels.size());
+        List<CollectionParent> parents = new ArrayList<>();
+        for (String bucketName : bucketNames) {
+          Resource parent = getConfigResource(resourceResolver, path, bucketName, configName);
+          if (parent != null) {
+            parents.add(new CollectionParent(parent));
+          }
+        }
+        levels.add(parents);
+      }
+      return levels.get(index);
+    }
+
+  }
+
+  /**
+   * Collection parent resource with children that are listed only once when needed.
+   */
+  private static final class CollectionParent {
+
+    private final Resource resource;
+    private Map<String, Resource> children;
+
+    CollectionParent(Resource resource) {
+      this.resource = resource;
+    }
+
+    Map<String, Resource> getChildren() {
+      if (children == null) {
+        children = new LinkedHashMap<>();
+        for (Resource child : resource.getChildren()) {
+          children.put(child.getName(), child);
+        }
+      }
+      return children;
+    }
+
+  }
+
+  /**
+   * Inheritance chain of a collection item. The first resource is resolved instantly, all further levels only when
+   * the chain is iterated past it.
+   */
+  private static final class ItemInheritanceChain implements Iterator<Resource> {
+
+    private final CollectionLevels levels;
+    private final String itemName;
+    private int levelIndex;
+    private Resource next;
+    private boolean fetched;
+
+    ItemInheritanceChain(CollectionLevels levels, String itemName) {
+      this.levels = levels;
+      this.itemName = itemName;
+      fetchNext();
+    }
+
+    private void fetchNext() {
+      next = null;
+      while (next == null && levelIndex < levels.size()) {
+        for (CollectionParent parent : levels.get(levelIndex++)) {
+          next = parent.getChildren().get(itemName);
+          if (next != null) {
+            break;
+          }
+        }
+      }
+      fetched = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (!fetched) {
+        fetchNext();
+      }
+      return next != null;
+    }
+
+    @Override
+    public Resource next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      fetched = false;
+      return next;
+    }
+
   }
 
   private boolean isValidResourceCollectionItem(Resource resource) {
@@ -470,7 +1106,7 @@ public class ToolsConfigPagePersistenceStrategy implements ConfigurationPersiste
     }
     String name = bucketName + "/" + configName;
 
-    Iterator<String> configPaths = this.findConfigRefs(contentResource, Collections.singleton(bucketName));
+    Iterator<String> configPaths = this.findConfigRefs(contentResource, Collections.singleton(bucketName)).iterator();
     if (configPaths.hasNext()) {
       String configPath = buildResourcePath(configPaths.next(), name);
       log.trace("+ Building configuration path for name '{}' for resource {}: {}", name, contentResource.getPath(), configPath);
@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
@@ -37,11 +38,18 @@ import org.apache.sling.api.resource.Resource;
 import org.apache.sling.caconfig.management.ConfigurationManager;
 import org.apache.sling.caconfig.management.ConfigurationResourceResolverConfig;
 import org.apache.sling.caconfig.management.multiplexer.ConfigurationResourceResolvingStrategyMultiplexer;
+import org.apache.sling.caconfig.resource.spi.ConfigurationResourceResolvingStrategy;
 import org.apache.sling.caconfig.spi.metadata.ConfigurationMetadata;
+import org.apache.sling.commons.osgi.Order;
+import org.apache.sling.commons.osgi.RankedServices;
+import org.jetbrains.annotations.Nullable;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
@@ -54,6 +62,8 @@ import com.day.cq.wcm.api.PageManager;
 import com.day.cq.wcm.api.PageManagerFactory;
 import com.day.cq.wcm.api.reference.ReferenceProvider;
 
+import io.wcm.caconfig.extensions.persistence.ConfigurationResourceBatchResolvingStrategy;
+
 /**
  * <p>
  * This implementation of {@link ReferenceProvider} allows to resolve references of a given {@link Resource} to
@@ -92,6 +102,10 @@ public class ConfigurationReferenceProvider implements ReferenceProvider {
   @Reference
   private ConfigurationResourceResolverConfig configurationResourceResolverConfig;
 
+  // same order as in the configuration resource resolving strategy multiplexer
+  private final RankedServices<ConfigurationResourceResolvingStrategy> configurationResourceResolvingStrategies = new RankedServices<>(Order.DESCENDING);
+  private final List<ConfigurationResourceBatchResolvingStrategy> configurationResourceBatchResolvingStrategies = new CopyOnWriteArrayList<>();
+
   private boolean enabled;
 
   private static final Logger log = LoggerFactory.getLogger(ConfigurationReferenceProvider.class);
@@ -109,6 +123,26 @@ public class ConfigurationReferenceProvider implements ReferenceProvider {
     enabled = false;
   }
 
+  @Reference(name = "configurationResourceResolvingStrategies", service = ConfigurationResourceResolvingStrategy.class,
+      cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+  protected void bindConfigurationResourceResolvingStrategy(ConfigurationResourceResolvingStrategy item, Map<String, Object> props) {
+    configurationResourceResolvingStrategies.bind(item, props);
+  }
+
+  protected void unbindConfigurationResourceResolvingStrategy(ConfigurationResourceResolvingStrategy item, Map<String, Object> props) {
+    configurationResourceResolvingStrategies.unbind(item, props);
+  }
+
+  @Reference(name = "configurationResourceBatchResolvingStrategies", service = ConfigurationResourceBatchResolvingStrategy.class,
+      cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+  protected void bindConfigurationResourceBatchResolvingStrategy(ConfigurationResourceBatchResolvingStrategy item) {
+    configurationResourceBatchResolvingStrategies.add(item);
+  }
+
+  protected void unbindConfigurationResourceBatchResolvingStrategy(ConfigurationResourceBatchResolvingStrategy item) {
+    configurationResourceBatchResolvingStrategies.remove(item);
+  }
+
   @Override
   public List<com.day.cq.wcm.api.reference.Reference> findReferences(Resource resource) {
     if (!enabled) {
@@ -129,8 +163,21 @@ public class ConfigurationReferenceProvider implements ReferenceProvider {
     List<com.day.cq.wcm.api.reference.Reference> references = new ArrayList<>();
     Set<String> configurationBuckets = new LinkedHashSet<>(configurationResourceResolverConfig.configBucketNames());
 
+    // resolve all configuration names in a single pass if the strategy with the highest ranking supports it
+    // and is active for the resource
+    Map<String, Iterator<Resource>> configurationInheritanceChains = getBatchInheritanceChains(resource,
+        configurationBuckets, configurationMetadatas.keySet());
+
     for (String configurationName : configurationMetadatas.keySet()) {
-      Iterator<Resource> configurationInheritanceChain = configurationResourceResolvingStrategy.getResourceInheritanceChain(resource, configurationBuckets, configurationName);
+      Iterator<Resource> configurationInheritanceChain;
+      if (configurationInheritanceChains != null) {
+        // configuration names not found by the top-ranked strategy are not looked up in other strategies,
+        // same as in the multiplexer
+        configurationInheritanceChain = configurationInheritanceChains.get(configurationName);
+      }
+      else {
+        configurationInheritanceChain = configurationResourceResolvingStrategy.getResourceInheritanceChain(resource, configurationBuckets, configurationName);
+      }
       Map<String, Page> referencePages = new LinkedHashMap<>();
 
       while (configurationInheritanceChain != null && configurationInheritanceChain.hasNext()) {
@@ -159,6 +206,22 @@ public class ConfigurationReferenceProvider implements ReferenceProvider {
     return references;
   }
 
+  /**
+   * @return Inheritance chains resolved by the top-ranked strategy, or null if it does not support batch resolution
+   *         or is not active for the resource
+   */
+  private @Nullable Map<String, Iterator<Resource>> getBatchInheritanceChains(Resource resource,
+      Set<String> configurationBuckets, Set<String> configurationNames) {
+    Iterator<ConfigurationResourceResolvingStrategy> strategies = configurationResourceResolvingStrategies.iterator();
+    ConfigurationResourceResolvingStrategy topRankedStrategy = strategies.hasNext() ? strategies.next() : null;
+    for (ConfigurationResourceBatchResolvingStrategy batchStrategy : configurationResourceBatchResolvingStrategies) {
+      if (batchStrategy == topRankedStrategy) {
+        return batchStrategy.getResourceInheritanceChains(resource, configurationBuckets, configurationNames);
+      }
+    }
+    return null;
+  }
+
   private com.day.cq.wcm.api.reference.Reference toReference(Resource resource, Page configPage,
       Map<String, ConfigurationMetadata> configurationMetadatas, Set<String> configurationBuckets) {
     log.trace("Found configuration reference {} for resource {}", configPage.getPath(), resource.getPath());
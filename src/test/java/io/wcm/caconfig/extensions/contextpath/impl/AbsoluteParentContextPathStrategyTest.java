@@ -21,16 +21,34 @@ package io.wcm.caconfig.extensions.contextpath.impl;
 
 import static io.wcm.caconfig.extensions.contextpath.impl.TestUtils.assertNoResult;
 import static io.wcm.caconfig.extensions.contextpath.impl.TestUtils.assertResult;
-
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.collections4.IteratorUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.NonExistingResource;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.caconfig.resource.spi.ContextPathStrategy;
+import org.apache.sling.caconfig.resource.spi.ContextResource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.osgi.framework.Constants;
+
+import com.day.cq.wcm.api.PageManagerFactory;
 
 import io.wcm.testing.mock.aem.junit5.AemContext;
 import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import io.wcm.wcm.commons.util.Path;
 
 @ExtendWith(AemContextExtension.class)
 @ExtendWith(MockitoExtension.class)
@@ -125,6 +143,44 @@ class AbsoluteParentContextPathStrategyTest {
         "/content/region1", "/conf/region1");
   }
 
+  @Test
+  void testWithLevels3_Unlimited_DeepTree() {
+    ContextPathStrategy underTest = context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
+        "levels", new int[] { 3 },
+        "unlimited", true);
+
+    String path = level4.getPath();
+    for (int i = 5; i <= 12; i++) {
+      path += "/page" + i;
+      context.create().page(path);
+    }
+    Resource deepResource = context.create().resource(path + "/jcr:content/par/comp1");
+
+    // all levels from the component resource up to level 3
+    List<String> expected = new ArrayList<>();
+    String contextPath = Path.getOriginalPath(deepResource.getPath(), context.resourceResolver());
+    while (!StringUtils.equals(contextPath, "/content/region1/site1")) {
+      expected.add(contextPath);
+      expected.add("/conf" + StringUtils.removeStart(contextPath, "/content"));
+      contextPath = StringUtils.substringBeforeLast(contextPath, "/");
+    }
+    assertEquals(26, expected.size());
+    assertResult(context, underTest.findContextResources(deepResource), expected.toArray(new String[0]));
+  }
+
+  @Test
+  void testWithLevels13_NonExistingResource() {
+    ContextPathStrategy underTest = context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
+        "levels", new int[] { 1, 3 },
+        "unlimited", true);
+
+    Resource nonExistingResource = new NonExistingResource(context.resourceResolver(), level4.getPath() + "/missing");
+    assertResult(context, underTest.findContextResources(nonExistingResource),
+        "/content/region1/site1/en/page1", "/conf/region1/site1/en/page1",
+        "/content/region1/site1/en", "/conf/region1/site1/en",
+        "/content/region1", "/conf/region1");
+  }
+
   @Test
   void testWithAlternativePatterns() {
     ContextPathStrategy underTest = context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
@@ -138,6 +194,94 @@ class AbsoluteParentContextPathStrategyTest {
         "/content/region1/site1/en", "/conf/test1/content/region1/site1/en");
   }
 
+  @Test
+  void testWithContextPathPrefixRouting() {
+    ContextPathStrategy underTest1 = context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
+        "levels", new int[] { 1, 3 },
+        "contextPathRegex", "^/content/region1(/.+)?$",
+        "configPathPatterns", new String[] { "/conf/brand1$1" },
+        "service.ranking", 100);
+    ContextPathStrategy underTest2 = context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
+        "levels", new int[] { 1, 3 },
+        "contextPathRegex", "^/content/region2(/.+)?$",
+        "configPathPatterns", new String[] { "/conf/brand2$1" },
+        "service.ranking", 200);
+
+    List<ContextResource> result = IteratorUtils.toList(underTest1.findContextResources(level4));
+    assertEquals(2, result.size());
+    assertEquals("/conf/brand1/site1/en", result.get(0).getConfigRef());
+    assertEquals(100, result.get(0).getServiceRanking());
+    assertEquals("/conf/brand1", result.get(1).getConfigRef());
+
+    assertNoResult(context, underTest2.findContextResources(level4));
+  }
+
+  @Test
+  void testGetLiteralPrefix() {
+    assertEquals("/content", getLiteralPrefix("^/content(/.+)$"));
+    assertEquals("/content/brand1", getLiteralPrefix("^/content/brand1(/.+)?$"));
+    assertEquals("/content/", getLiteralPrefix("^/content/[ab](/.+)$"));
+    assertEquals("/content/brand", getLiteralPrefix("^/content/brand1?(/.+)$"));
+    assertEquals("/content/brand", getLiteralPrefix("^/content/brand1{1,2}$"));
+    assertEquals("/content/jcr:content", getLiteralPrefix("^/content/jcr:content(/.+)$"));
+    assertEquals("", getLiteralPrefix("^.*/content$"));
+    assertEquals("", getLiteralPrefix("/content(/.+)$"));
+    assertEquals("", getLiteralPrefix("^/content/a|/content/b$"));
+    assertEquals("", getLiteralPrefix("(?i)^/content(/.+)$"));
+    assertEquals("", AbsoluteParentContextPathStrategy.getLiteralPrefix(Pattern.compile("^/content", Pattern.CASE_INSENSITIVE)));
+  }
+
+  @Test
+  void testGetLiteralPrefix_Escapes() {
+    assertEquals("/content/brand", getLiteralPrefix("^/content/brand\\d$"));
+    assertEquals("/content", getLiteralPrefix("^/content\\/brand1(/.+)$"));
+    assertEquals("/content", getLiteralPrefix("^/content\\Q.html\\E$"));
+    assertEquals("", getLiteralPrefix("^\\/content(/.+)$"));
+    assertEquals("", getLiteralPrefix("^/content/a\\|b(/.+)$"));
+  }
+
+  @Test
+  void testGetLiteralPrefix_Groups() {
+    assertEquals("/content/", getLiteralPrefix("^/content/(brand1)(/.+)$"));
+    assertEquals("/content/brand1", getLiteralPrefix("^/content/brand1(?=/)(/.+)$"));
+    assertEquals("", getLiteralPrefix("^/content/(?:brand1|brand2)(/.+)$"));
+    assertEquals("", getLiteralPrefix("^(/content)(/.+)$"));
+    assertEquals("", getLiteralPrefix("^(?:/content)?/brand1(/.+)$"));
+    assertEquals("", getLiteralPrefix("^(?i:/content)(/.+)$"));
+  }
+
+  private static String getLiteralPrefix(String regex) {
+    return AbsoluteParentContextPathStrategy.getLiteralPrefix(Pattern.compile(regex));
+  }
+
+  @Test
+  void testWithInvalidConfigPathPattern() {
+    ContextPathStrategy underTest = context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
+        "levels", new int[] { 1, 3 },
+        "configPathPatterns", new String[] { "/conf$2", "/conf$1" });
+
+    // config path pattern with invalid group reference is ignored
+    assertResult(context, underTest.findContextResources(level4),
+        "/content/region1/site1/en", "/conf/region1/site1/en",
+        "/content/region1", "/conf/region1");
+  }
+
+  @Test
+  void testWithAlternativePatterns_ConfigRefCacheDisabled() {
+    ContextPathStrategy underTest = context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
+        "levels", new int[] { 1, 3 },
+        "contextPathRegex", "^(/content/.+)$",
+        "contextPathBlacklistRegex", "^.*/region\\d+?$",
+        "configPathPatterns", new String[] { "/conf/test1$1", "/conf/test2$1" },
+        "configRefCacheMaxSize", 0);
+
+    for (int i = 0; i < 2; i++) {
+      assertResult(context, underTest.findContextResources(level4),
+          "/content/region1/site1/en", "/conf/test2/content/region1/site1/en",
+          "/content/region1/site1/en", "/conf/test1/content/region1/site1/en");
+    }
+  }
+
   /**
    * Test case for WCON-51
    */
@@ -197,4 +341,43 @@ class AbsoluteParentContextPathStrategyTest {
     assertResult(context, underTest.findContextResources(level1Config),
         "/content/region1", "/conf/region1");
   }
+
+  @Test
+  void testWithoutTemplateBlacklist_NoPageManager() {
+    PageManagerFactory pageManagerFactory = registerPageManagerFactorySpy();
+    ContextPathStrategy underTest = context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
+        "levels", new int[] { 1, 3 });
+
+    assertResult(context, underTest.findContextResources(level4),
+        "/content/region1/site1/en", "/conf/region1/site1/en",
+        "/content/region1", "/conf/region1");
+
+    verify(pageManagerFactory, never()).getPageManager(any());
+  }
+
+  @Test
+  void testWithConfigChildPagesBlacklistedByTemplate_Cached() {
+    Resource level3Config = context.create().page("/content/region1/site1/en/other-config", "/apps/myapp/templates/caconfig-editor").getContentResource();
+
+    PageManagerFactory pageManagerFactory = registerPageManagerFactorySpy();
+    ContextPathStrategy underTest = context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
+        "levels", new int[] { 1, 3 },
+        "templatePathsBlacklist", new String[] { "/apps/myapp/templates/caconfig-editor" });
+
+    for (int i = 0; i < 3; i++) {
+      assertResult(context, underTest.findContextResources(level3Config),
+          "/content/region1/site1/en", "/conf/region1/site1/en",
+          "/content/region1", "/conf/region1");
+    }
+
+    // one lookup per context level on first call, afterwards verdicts are cached
+    verify(pageManagerFactory, times(2)).getPageManager(any());
+  }
+
+  private PageManagerFactory registerPageManagerFactorySpy() {
+    PageManagerFactory pageManagerFactory = spy(context.getService(PageManagerFactory.class));
+    context.registerService(PageManagerFactory.class, pageManagerFactory, Constants.SERVICE_RANKING, Integer.MAX_VALUE);
+    return pageManagerFactory;
+  }
+
 }
@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.contextpath.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+class ConfigPathTemplateTest {
+
+  private static final List<String> PATHS = List.of(
+      "/content/region1/site1/en",
+      "/content/region1",
+      "/content",
+      "/other/path");
+
+  @Test
+  void testSameResultAsReplaceAll() {
+    assertSameResultAsReplaceAll("^/content(/.+)$", "/conf$1");
+    assertSameResultAsReplaceAll("^(/content/.+)$", "/conf/test1$1");
+    assertSameResultAsReplaceAll("^/content/([^/]+)/([^/]+)(/.*)?$", "/conf/$2/$1$3");
+    assertSameResultAsReplaceAll("^/content(/.+)$", "/conf$0");
+    assertSameResultAsReplaceAll("^/content(/.+)$", "/conf/static");
+    assertSameResultAsReplaceAll("^/content(/.+)$", "");
+    assertSameResultAsReplaceAll("^/content(/.+)$", "/conf\\$1\\\\$1");
+    assertSameResultAsReplaceAll("^/content(/.+)$", "/conf$12");
+    assertSameResultAsReplaceAll("^/content(?<site>/.+)$", "/conf${site}");
+    assertSameResultAsReplaceAll("^/content(/region\\d)?(/.*)?$", "/conf$1$2");
+    // not anchored, lazy expression with multiple matches
+    assertSameResultAsReplaceAll("/(\\w+?)", "/x$1");
+    assertSameResultAsReplaceAll("", "-");
+  }
+
+  @Test
+  void testInvalid() {
+    Pattern pattern = Pattern.compile("^/content(/.+)$");
+    assertThrows(IllegalArgumentException.class, () -> ConfigPathTemplate.compile("/conf$2", pattern));
+    assertThrows(IllegalArgumentException.class, () -> ConfigPathTemplate.compile("/conf$", pattern));
+    assertThrows(IllegalArgumentException.class, () -> ConfigPathTemplate.compile("/conf$a", pattern));
+    assertThrows(IllegalArgumentException.class, () -> ConfigPathTemplate.compile("/conf\\", pattern));
+    assertThrows(IllegalArgumentException.class, () -> ConfigPathTemplate.compile("/conf${site}", pattern));
+    assertThrows(IllegalArgumentException.class, () -> ConfigPathTemplate.compile("/conf${site", pattern));
+    assertThrows(IllegalArgumentException.class, () -> ConfigPathTemplate.compile("/conf${}", pattern));
+  }
+
+  @Test
+  void testCompileAll() {
+    List<ConfigPathTemplate> result = ConfigPathTemplate.compileAll(new String[] { "/conf$1", "/conf$2", "/conf2$1" },
+        Pattern.compile("^/content(/.+)$"));
+    assertEquals(2, result.size());
+    assertEquals("/conf$1", result.get(0).toString());
+    assertEquals("/conf2$1", result.get(1).toString());
+
+    assertEquals(List.of(), ConfigPathTemplate.compileAll(new String[] { "/conf$1" }, null));
+    assertEquals(List.of(), ConfigPathTemplate.compileAll(null, Pattern.compile("^/content(/.+)$")));
+  }
+
+  private static void assertSameResultAsReplaceAll(String regex, String template) {
+    Pattern pattern = Pattern.compile(regex);
+    ConfigPathTemplate underTest = ConfigPathTemplate.compile(template, pattern);
+    for (String path : PATHS) {
+      Matcher matcher = pattern.matcher(path);
+      assertEquals(pattern.matcher(path).replaceAll(template), underTest.apply(matcher, path),
+          "regex=" + regex + ", template=" + template + ", path=" + path);
+    }
+  }
+
+}
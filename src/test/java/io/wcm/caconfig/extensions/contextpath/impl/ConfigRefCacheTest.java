@@ -0,0 +1,136 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.contextpath.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConfigRefCacheTest {
+
+  private ConfigRefCache underTest;
+  private AtomicInteger deriveCount;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new ConfigRefCache(2);
+    deriveCount = new AtomicInteger();
+  }
+
+  @Test
+  void testGet() {
+    assertEquals(List.of("/conf/site1"), get("/content/site1"));
+    assertEquals(List.of("/conf/site1"), get("/content/site1"));
+    assertEquals(List.of(), underTest.get("/other", path -> List.of()));
+    assertEquals(List.of(), underTest.get("/other", path -> List.of("/conf/unexpected")));
+
+    assertEquals(1, deriveCount.get());
+    assertEquals(2, underTest.size());
+  }
+
+  @Test
+  void testGet_Bounded() {
+    get("/content/site1");
+    get("/content/site2");
+    get("/content/site3");
+    assertEquals(2, underTest.size());
+
+    // least recently used entry was evicted
+    get("/content/site1");
+    assertEquals(4, deriveCount.get());
+  }
+
+  @Test
+  void testGet_EvictsLeastRecentlyUsed() {
+    underTest = new ConfigRefCache(20);
+    for (int i = 0; i < 20; i++) {
+      get("/content/site" + i);
+    }
+    get("/content/site0");
+    get("/content/site20");
+    assertTrue(underTest.size() <= 20);
+
+    // recently used entry was kept, oldest entry was evicted
+    get("/content/site0");
+    assertEquals(21, deriveCount.get());
+    get("/content/site1");
+    assertEquals(22, deriveCount.get());
+  }
+
+  @Test
+  void testGet_ReadersNotSerialized() throws Exception {
+    underTest = new ConfigRefCache(100);
+    get("/content/site1");
+    int readerCount = 8;
+    CyclicBarrier allReadersInside = new CyclicBarrier(readerCount);
+    ExecutorService executor = Executors.newFixedThreadPool(readerCount + 1);
+    try {
+      // each reader waits inside the cache lookup until all readers are inside concurrently,
+      // which would deadlock if lookups were serialized
+      List<Future<List<String>>> results = new ArrayList<>();
+      for (int i = 0; i < readerCount; i++) {
+        String contextPath = "/content/reader" + i;
+        results.add(executor.submit(() -> underTest.get(contextPath, path -> {
+          await(allReadersInside);
+          return List.of(path);
+        })));
+      }
+      // cached entries can be read while all readers are inside and another thread holds the cache monitor
+      synchronized (underTest) {
+        Future<List<String>> cachedRead = executor.submit(() -> underTest.get("/content/site1", path -> List.of()));
+        assertEquals(List.of("/conf/site1"), cachedRead.get(10, TimeUnit.SECONDS));
+      }
+      for (int i = 0; i < readerCount; i++) {
+        assertEquals(List.of("/content/reader" + i), results.get(i).get(10, TimeUnit.SECONDS));
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void await(CyclicBarrier barrier) {
+    try {
+      barrier.await(10, TimeUnit.SECONDS);
+    }
+    catch (Exception ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private List<String> get(String contextPath) {
+    return underTest.get(contextPath, path -> {
+      deriveCount.incrementAndGet();
+      return List.of(path.replace("/content", "/conf"));
+    });
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.contextpath.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TemplateBlacklistCacheTest {
+
+  private TemplateBlacklistCache underTest;
+  private AtomicInteger checkCount;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new TemplateBlacklistCache(100, MetricsService.NOOP);
+    checkCount = new AtomicInteger();
+  }
+
+  @Test
+  void testIsBlacklisted() {
+    assertTrue(isBlacklisted("/content/site1/config/jcr:content", true));
+    assertTrue(isBlacklisted("/content/site1/config/jcr:content", false));
+    assertFalse(isBlacklisted("/content/site1/en", false));
+    assertFalse(isBlacklisted("/content/site1/en", true));
+
+    assertEquals(2, checkCount.get());
+    assertEquals(2, underTest.getHitCount());
+    assertEquals(2, underTest.getMissCount());
+  }
+
+  @Test
+  void testIsBlacklisted_NotObserved() {
+    assertTrue(isBlacklisted("/content2/site1/config", true));
+    assertFalse(isBlacklisted("/content2/site1/config", false));
+
+    assertEquals(2, checkCount.get());
+    assertEquals(0, underTest.getHitCount());
+  }
+
+  @Test
+  void testInvalidation() {
+    assertFalse(isBlacklisted("/content/site1/en", false));
+    assertFalse(isBlacklisted("/content/site1/en/page1/jcr:content", false));
+    assertFalse(isBlacklisted("/content/site1/de", false));
+
+    // template of page content changed
+    underTest.onChange(List.of(new ResourceChange(ChangeType.CHANGED, "/content/site1/en/jcr:content", false)));
+
+    assertTrue(isBlacklisted("/content/site1/en", true));
+    assertTrue(isBlacklisted("/content/site1/en/page1/jcr:content", true));
+    assertFalse(isBlacklisted("/content/site1/de", true));
+
+    assertEquals(5, checkCount.get());
+  }
+
+  @Test
+  void testInvalidation_IgnoredChanges() {
+    assertFalse(isBlacklisted("/content/site1/en", false));
+
+    // changes inside page content do not affect the template
+    underTest.onChange(List.of(
+        new ResourceChange(ChangeType.CHANGED, "/content/site1/en/jcr:content/par/comp1", false),
+        new ResourceChange(ChangeType.ADDED, "/content/site1/en/jcr:content/par/comp2", false),
+        new ResourceChange(ChangeType.REMOVED, "/content/site1/en/jcr:content/par/comp3", false),
+        new ResourceChange(ChangeType.CHANGED, "/content/site1/en", false)));
+
+    assertFalse(isBlacklisted("/content/site1/en", true));
+    assertEquals(1, checkCount.get());
+  }
+
+  @Test
+  void testInvalidation_PageAddedRemoved() {
+    assertFalse(isBlacklisted("/content/site1/en/page1", false));
+    assertFalse(isBlacklisted("/content/site1/de/page1", false));
+
+    underTest.onChange(List.of(
+        new ResourceChange(ChangeType.REMOVED, "/content/site1/en", false),
+        new ResourceChange(ChangeType.ADDED, "/content/site1/de/page1/jcr:content", false)));
+
+    assertTrue(isBlacklisted("/content/site1/en/page1", true));
+    assertTrue(isBlacklisted("/content/site1/de/page1", true));
+    assertEquals(4, checkCount.get());
+  }
+
+  private boolean isBlacklisted(String path, boolean verdict) {
+    return underTest.isBlacklisted(path, () -> {
+      checkCount.incrementAndGet();
+      return verdict;
+    });
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PathCacheTest {
+
+  @Test
+  void testInvalidateAtOrBelow() {
+    PathCache<String> underTest = new PathCache<>(0);
+    for (String path : List.of("/content/a", "/content/a/b", "/content/a/b/c", "/content/a-1", "/content/ab", "/content")) {
+      underTest.put(path, path, underTest.getGeneration());
+    }
+    assertEquals(List.of("/content/a", "/content/a/b", "/content/a/b/c"), underTest.getPathsAtOrBelow("/content/a"));
+
+    underTest.invalidateAtOrBelow("/content/a");
+    assertNull(underTest.get("/content/a"));
+    assertNull(underTest.get("/content/a/b/c"));
+    assertEquals("/content/a-1", underTest.get("/content/a-1"));
+    assertEquals("/content/ab", underTest.get("/content/ab"));
+    assertEquals("/content", underTest.get("/content"));
+
+    underTest.invalidateAtOrBelow("/");
+    assertEquals(0, underTest.size());
+  }
+
+  @Test
+  void testPut_InvalidatedDuringRead() {
+    PathCache<String> underTest = new PathCache<>(0);
+    long generation = underTest.getGeneration();
+    underTest.invalidateAtOrBelow("/content/other");
+    underTest.put("/content/a", "value", generation);
+    assertNull(underTest.get("/content/a"));
+  }
+
+  @Test
+  void testMaxSize() {
+    PathCache<String> underTest = new PathCache<>(100);
+    for (int i = 0; i < 1000; i++) {
+      underTest.put("/content/path" + i, "value");
+    }
+    assertTrue(underTest.size() <= 100);
+  }
+
+  @Test
+  void testMaxSize_EvictsLeastRecentlyUsed() {
+    PathCache<String> underTest = new PathCache<>(8);
+    for (int i = 0; i < 8; i++) {
+      underTest.put("/content/path" + i, "value" + i);
+    }
+    // entries sorted first by path are used recently
+    underTest.get("/content/path0");
+    underTest.get("/content/path1");
+    underTest.put("/content/path8", "value8");
+
+    assertEquals(6, underTest.size());
+    assertEquals("value0", underTest.get("/content/path0"));
+    assertEquals("value1", underTest.get("/content/path1"));
+    assertNull(underTest.get("/content/path2"));
+    assertNull(underTest.get("/content/path3"));
+    assertNull(underTest.get("/content/path4"));
+    assertEquals("value8", underTest.get("/content/path8"));
+  }
+
+}
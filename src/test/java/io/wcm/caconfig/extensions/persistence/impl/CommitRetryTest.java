@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CommitRetryTest {
+
+  private ResourceResolver resolver;
+  private CommitRetry underTest;
+
+  @BeforeEach
+  void setUp() {
+    resolver = mock(ResourceResolver.class);
+    underTest = new CommitRetry("test", 3, 0, 0, MetricsService.NOOP);
+  }
+
+  @Test
+  void testRetryOnConflict() {
+    AtomicInteger attempts = new AtomicInteger();
+    boolean result = underTest.execute(resolver, () -> {
+      if (attempts.incrementAndGet() < 3) {
+        throw conflict();
+      }
+      return true;
+    });
+
+    assertTrue(result);
+    assertEquals(3, attempts.get());
+    assertEquals(2, underTest.getConflictCount());
+    assertEquals(2, underTest.getRetryCount());
+    verify(resolver, times(2)).revert();
+    verify(resolver, times(2)).refresh();
+  }
+
+  @Test
+  void testRetriesExhausted() {
+    AtomicInteger attempts = new AtomicInteger();
+    assertThrows(ConfigurationPersistenceException.class, () -> underTest.execute(resolver, () -> {
+      attempts.incrementAndGet();
+      throw conflict();
+    }));
+
+    assertEquals(4, attempts.get());
+    assertEquals(4, underTest.getConflictCount());
+    assertEquals(3, underTest.getRetryCount());
+  }
+
+  @Test
+  void testNoRetryWithPendingChanges() {
+    when(resolver.hasChanges()).thenReturn(true);
+    AtomicInteger attempts = new AtomicInteger();
+    assertThrows(ConfigurationPersistenceException.class, () -> underTest.execute(resolver, () -> {
+      attempts.incrementAndGet();
+      throw conflict();
+    }));
+
+    // pending changes from before the write operation are not discarded
+    assertEquals(1, attempts.get());
+    assertEquals(0, underTest.getRetryCount());
+    verify(resolver, never()).revert();
+  }
+
+  @Test
+  void testNoRetryOnOtherFailure() {
+    AtomicInteger attempts = new AtomicInteger();
+    assertThrows(ConfigurationPersistenceException.class, () -> underTest.execute(resolver, () -> {
+      attempts.incrementAndGet();
+      throw new ConfigurationPersistenceException("failed", new PersistenceException("failed", new IllegalStateException()));
+    }));
+
+    assertEquals(1, attempts.get());
+    assertEquals(0, underTest.getConflictCount());
+    verify(resolver, never()).refresh();
+  }
+
+  @Test
+  void testRetryOnOakConflict() {
+    AtomicInteger attempts = new AtomicInteger();
+    boolean result = underTest.execute(resolver, () -> {
+      if (attempts.incrementAndGet() == 1) {
+        throw oakConflict(CommitFailedException.STATE, 1);
+      }
+      if (attempts.get() == 2) {
+        throw oakConflict(CommitFailedException.MERGE, 4);
+      }
+      return true;
+    });
+
+    assertTrue(result);
+    assertEquals(3, attempts.get());
+    assertEquals(2, underTest.getConflictCount());
+  }
+
+  @Test
+  void testNoRetryOnOtherOakFailure() {
+    AtomicInteger attempts = new AtomicInteger();
+    assertThrows(ConfigurationPersistenceException.class, () -> underTest.execute(resolver, () -> {
+      attempts.incrementAndGet();
+      // message mentions a conflict, but type is a constraint violation
+      throw oakConflict(CommitFailedException.CONSTRAINT, 1);
+    }));
+
+    assertEquals(1, attempts.get());
+    assertEquals(0, underTest.getConflictCount());
+  }
+
+  @Test
+  void testBackoff() {
+    underTest = new CommitRetry("test", 10, 100, 1000, MetricsService.NOOP);
+    for (int retry = 0; retry < 10; retry++) {
+      long expected = Math.min(1000, 100L << retry);
+      long backoff = underTest.getBackoffMillis(retry);
+      assertTrue(backoff >= expected / 2 && backoff <= expected, "backoff " + backoff + " for retry " + retry);
+    }
+  }
+
+  private static ConfigurationPersistenceException oakConflict(String type, int code) {
+    return new ConfigurationPersistenceException("Unable to persist configuration changes",
+        new PersistenceException("Unable to commit changes",
+            new RepositoryException(new CommitFailedException(type, code, "OakState0001 OakMerge0001 conflict"))));
+  }
+
+  private static ConfigurationPersistenceException conflict() {
+    return new ConfigurationPersistenceException("Unable to persist configuration changes",
+        new PersistenceException("Unable to commit changes",
+            new InvalidItemStateException("Unresolved conflicts in /content/site1/tools/config/jcr:content")));
+  }
+
+}
@@ -0,0 +1,314 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static com.day.cq.commons.jcr.JcrConstants.JCR_PRIMARYTYPE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.jcr.Session;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+@ExtendWith(AemContextExtension.class)
+class ConfigPageIndexTest {
+
+  private static final String RELATIVE_CONFIG_PATH = "/tools/config/jcr:content";
+  private static final String CONFIG_REF_1 = "/content/site1" + RELATIVE_CONFIG_PATH;
+  private static final String CONFIG_REF_2 = "/content/site2" + RELATIVE_CONFIG_PATH;
+  private static final Set<String> BUCKET_NAMES = Set.of("sling:configs", "sling:other");
+  private static final String[] NO_PATHS = new String[0];
+
+  final AemContext context = new AemContext();
+
+  private ResourceResolver resourceResolver;
+
+  @BeforeEach
+  void setUp() throws PersistenceException {
+    resourceResolver = context.resourceResolver();
+    createConfigPage("/content/site1");
+    context.create().resource(CONFIG_REF_1 + "/sling:configs/config1");
+    context.create().resource(CONFIG_REF_1 + "/sling:configs/config2/jcr:content");
+    context.create().page("/content/site2");
+    resourceResolver.commit();
+  }
+
+  @Test
+  void testMayExist() {
+    ConfigPageIndex underTest = newIndex(new String[] { "/content", "/conf" }, NO_PATHS);
+
+    assertTrue(underTest.mayExist(CONFIG_REF_1, "sling:configs"));
+    assertTrue(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config1"));
+    assertTrue(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config2/jcr:content"));
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config3"));
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:other"));
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:other", "config1"));
+    assertFalse(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+    assertEquals(4, underTest.getSavedLookupCount());
+
+    // bucket name not indexed
+    assertTrue(underTest.mayExist(CONFIG_REF_1, "sling:unknown", "config1"));
+  }
+
+  @Test
+  void testMayExist_NotObserved() {
+    ConfigPageIndex underTest = newIndex(new String[] { "/content", "/conf" }, NO_PATHS);
+    assertTrue(underTest.mayExist("/var/config", "sling:configs", "config1"));
+    assertEquals(0, underTest.getSavedLookupCount());
+  }
+
+  @Test
+  void testInvalidation_Event() throws PersistenceException {
+    ConfigPageIndex underTest = newIndex(new String[] { "/content" }, NO_PATHS);
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config3"));
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:other", "config1"));
+    context.create().resource(CONFIG_REF_1 + "/sling:configs/config3");
+    context.create().resource(CONFIG_REF_1 + "/sling:other/config1");
+    resourceResolver.commit();
+
+    // properties changed: index is kept
+    underTest.onChange(List.of(change(ChangeType.CHANGED, CONFIG_REF_1 + "/sling:configs/config3")));
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config3"));
+
+    // configuration and bucket added
+    underTest.onChange(List.of(change(ChangeType.ADDED, CONFIG_REF_1 + "/sling:configs/config3"),
+        change(ChangeType.ADDED, CONFIG_REF_1 + "/sling:other")));
+    assertTrue(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config3"));
+    assertTrue(underTest.mayExist(CONFIG_REF_1, "sling:other", "config1"));
+  }
+
+  @Test
+  void testInvalidation_ConfigRefAdded() throws PersistenceException {
+    ConfigPageIndex underTest = newIndex(new String[] { "/content" }, NO_PATHS);
+    assertFalse(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+    context.create().resource(CONFIG_REF_2 + "/sling:configs/config1");
+    resourceResolver.commit();
+
+    underTest.onChange(List.of(change(ChangeType.ADDED, "/content/site2/tools")));
+    assertTrue(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+  }
+
+  @Test
+  void testInvalidation_Write() throws PersistenceException {
+    ConfigPageIndex underTest = newIndex(new String[] { "/content" }, NO_PATHS);
+    assertFalse(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+    context.create().resource(CONFIG_REF_2 + "/sling:configs/config1/jcr:content");
+    resourceResolver.commit();
+
+    underTest.update(CONFIG_REF_2 + "/sling:configs/config1/jcr:content");
+    assertTrue(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+  }
+
+  @Test
+  void testBuild() {
+    ConfigPageIndex underTest = newIndex(NO_PATHS, new String[] { "/content" });
+
+    // index not built yet: config references are read when first needed
+    assertFalse(underTest.isComplete());
+    assertFalse(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+
+    underTest.build();
+    assertTrue(underTest.isComplete());
+    assertEquals(1, underTest.getConfigPageCount());
+    assertTrue(underTest.getEstimatedHeapSize() > 0);
+
+    assertTrue(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config1"));
+    assertTrue(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config2/jcr:content"));
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config3"));
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:other", "config1"));
+    assertFalse(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+    assertFalse(underTest.mayExist("/content/site2/page1" + RELATIVE_CONFIG_PATH, "sling:configs", "config1"));
+
+    // not below index path
+    assertTrue(underTest.mayExist("/conf/site1", "sling:configs", "config1"));
+  }
+
+  @Test
+  void testBuild_SkipDamAndOtherHierarchies() throws PersistenceException {
+    context.create().resource("/content/dam", JCR_PRIMARYTYPE, "sling:OrderedFolder");
+    createConfigPage("/content/dam/site3");
+    context.create().resource("/content/other", JCR_PRIMARYTYPE, "nt:unstructured");
+    createConfigPage("/content/other/site4");
+    resourceResolver.commit();
+
+    ConfigPageIndex underTest = newIndex(NO_PATHS, new String[] { "/content" });
+    underTest.build();
+    assertEquals(1, underTest.getConfigPageCount());
+
+    // contexts in hierarchies that are not traversed are not known
+    assertTrue(underTest.mayExist("/content/dam/site3" + RELATIVE_CONFIG_PATH, "sling:configs", "config1"));
+    assertTrue(underTest.mayExist("/content/other/site4" + RELATIVE_CONFIG_PATH, "sling:configs", "config1"));
+    assertTrue(underTest.mayExist("/content/site1/tools/page1" + RELATIVE_CONFIG_PATH, "sling:configs", "config1"));
+
+    // added below skipped hierarchy
+    context.create().page("/content/other/site4/page1");
+    underTest.onChange(List.of(change(ChangeType.ADDED, "/content/other/site4/page1")));
+    assertEquals(1, underTest.getConfigPageCount());
+  }
+
+  @Test
+  void testBuild_ConfigPageAdded() throws PersistenceException {
+    ConfigPageIndex underTest = newIndex(NO_PATHS, new String[] { "/content" });
+    underTest.build();
+    assertFalse(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+
+    createConfigPage("/content/site2");
+    context.create().resource(CONFIG_REF_2 + "/sling:configs/config1");
+    resourceResolver.commit();
+    underTest.onChange(List.of(
+        change(ChangeType.ADDED, "/content/site2/tools"),
+        change(ChangeType.ADDED, "/content/site2/tools/config"),
+        change(ChangeType.ADDED, CONFIG_REF_2 + "/sling:configs/config1")));
+
+    assertEquals(2, underTest.getConfigPageCount());
+    assertTrue(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+  }
+
+  @Test
+  void testBuild_ConfigRemoved() throws PersistenceException {
+    ConfigPageIndex underTest = newIndex(NO_PATHS, new String[] { "/content" });
+    underTest.build();
+    assertTrue(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config1"));
+
+    resourceResolver.delete(resourceResolver.getResource(CONFIG_REF_1 + "/sling:configs/config1"));
+    resourceResolver.commit();
+    underTest.onChange(List.of(change(ChangeType.REMOVED, CONFIG_REF_1 + "/sling:configs/config1")));
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config1"));
+    assertTrue(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config2"));
+  }
+
+  @Test
+  void testBuild_SiteRemoved() throws PersistenceException {
+    ConfigPageIndex underTest = newIndex(NO_PATHS, new String[] { "/content" });
+    underTest.build();
+    resourceResolver.delete(resourceResolver.getResource("/content/site1"));
+    resourceResolver.commit();
+    underTest.onChange(List.of(change(ChangeType.REMOVED, "/content/site1")));
+    assertEquals(0, underTest.getConfigPageCount());
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config1"));
+  }
+
+  @Test
+  void testBuild_ChangeBeforeBuild() throws PersistenceException {
+    ConfigPageIndex underTest = newIndex(NO_PATHS, new String[] { "/content" });
+    createConfigPage("/content/site2");
+    context.create().resource(CONFIG_REF_2 + "/sling:configs/config1");
+    resourceResolver.commit();
+
+    // change is queued and applied after build
+    underTest.onChange(List.of(change(ChangeType.ADDED, CONFIG_REF_2)));
+    underTest.build();
+    assertTrue(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+  }
+
+  @Test
+  void testBuild_Update() throws PersistenceException {
+    ConfigPageIndex underTest = newIndex(NO_PATHS, new String[] { "/content" });
+    underTest.build();
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config3"));
+
+    context.create().resource(CONFIG_REF_1 + "/sling:configs/config3");
+    resourceResolver.commit();
+    underTest.update(CONFIG_REF_1 + "/sling:configs/config3");
+    assertTrue(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config3"));
+  }
+
+  @Test
+  void testBuild_ConfigPageAddedWithoutEvent() throws PersistenceException {
+    ConfigPageIndex underTest = newIndex(NO_PATHS, new String[] { "/content" });
+    underTest.build();
+
+    // e.g. created on another cluster node, change event not received yet: config reference missing in index is read
+    createConfigPage("/content/site2");
+    context.create().resource(CONFIG_REF_2 + "/sling:configs/config1");
+    resourceResolver.commit();
+    assertTrue(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+    assertFalse(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config2"));
+  }
+
+  @Test
+  void testReadWithServiceResourceResolver() throws PersistenceException {
+    ConfigPageIndex underTest = newIndex(new String[] { "/content" }, NO_PATHS);
+
+    // uncommitted changes of the resource resolver used for the lookup are not visible in the index
+    context.create().resource(CONFIG_REF_2 + "/sling:configs/config1");
+    assertFalse(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+    resourceResolver.revert();
+  }
+
+  @Test
+  void testNotReadableByServiceUser() throws Exception {
+    ResourceResolver serviceResourceResolver = spy(context.getService(ResourceResolverFactory.class)
+        .getServiceResourceResolver(null));
+    Session session = mock(Session.class);
+    when(session.hasPermission(anyString(), eq(Session.ACTION_READ)))
+        .thenAnswer(invocation -> !invocation.getArgument(0, String.class).startsWith("/content/site2"));
+    doReturn(session).when(serviceResourceResolver).adaptTo(Session.class);
+    ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+    when(resourceResolverFactory.getServiceResourceResolver(any())).thenReturn(serviceResourceResolver);
+
+    ConfigPageIndex underTest = new ConfigPageIndex(BUCKET_NAMES, 100, NO_PATHS, resourceResolverFactory,
+        RELATIVE_CONFIG_PATH, new String[] { "/content" }, MetricsService.NOOP);
+
+    // config reference not readable by service user is unknown
+    assertTrue(underTest.mayExist(CONFIG_REF_2, "sling:configs", "config1"));
+    assertFalse(underTest.mayExist(CONFIG_REF_1, "sling:configs", "config3"));
+  }
+
+  private ConfigPageIndex newIndex(String[] observedPaths, String[] indexPaths) {
+    return new ConfigPageIndex(BUCKET_NAMES, 100, observedPaths, context.getService(ResourceResolverFactory.class),
+        RELATIVE_CONFIG_PATH, indexPaths, MetricsService.NOOP);
+  }
+
+  private void createConfigPage(String contextPath) {
+    if (resourceResolver.getResource(contextPath) == null) {
+      context.create().page(contextPath);
+    }
+    context.create().page(contextPath + "/tools");
+    context.create().page(contextPath + "/tools/config");
+  }
+
+  private static ResourceChange change(ChangeType changeType, String path) {
+    return new ResourceChange(changeType, path, false);
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConfigResolutionCacheTest {
+
+  private static final Set<String> BUCKETS = Set.of("sling:configs");
+  private static final List<String> REFS = List.of("/content/site1/tools/config/jcr:content", "/conf/site1");
+
+  private ConfigResolutionCache underTest;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new ConfigResolutionCache(100, new String[] { "/content", "/conf" }, MetricsService.NOOP);
+  }
+
+  @Test
+  void testConfigRefs() {
+    assertNull(underTest.getConfigRefs("/content/site1/page1", BUCKETS));
+    underTest.putConfigRefs("/content/site1/page1", BUCKETS, REFS, underTest.getGeneration());
+    assertEquals(REFS, underTest.getConfigRefs("/content/site1/page1", BUCKETS));
+    assertNull(underTest.getConfigRefs("/content/site1/page1", Set.of("other")));
+
+    assertEquals(1, underTest.getHitCount());
+    assertEquals(2, underTest.getMissCount());
+  }
+
+  @Test
+  void testConfigRefs_NotObserved() {
+    underTest.putConfigRefs("/var/page1", BUCKETS, REFS, underTest.getGeneration());
+    assertNull(underTest.getConfigRefs("/var/page1", BUCKETS));
+  }
+
+  @Test
+  void testConfigRefs_Invalidation() {
+    putConfigRefs("/content/site1/page1");
+    putConfigRefs("/content/site1/page1/jcr:content/par/comp1");
+    putConfigRefs("/content/site2/page1");
+
+    // change of unrelated or descendant resources
+    underTest.onChange(List.of(change(ChangeType.ADDED, "/content/site1/page1/page11"),
+        change(ChangeType.ADDED, "/content/site11")));
+    assertEquals(REFS, underTest.getConfigRefs("/content/site1/page1", BUCKETS));
+
+    // change of page content of context resource
+    underTest.onChange(List.of(change(ChangeType.CHANGED, "/content/site1/jcr:content")));
+    assertNull(underTest.getConfigRefs("/content/site1/page1", BUCKETS));
+    assertNull(underTest.getConfigRefs("/content/site1/page1/jcr:content/par/comp1", BUCKETS));
+    assertEquals(REFS, underTest.getConfigRefs("/content/site2/page1", BUCKETS));
+  }
+
+  @Test
+  void testConfigRefs_InvalidationOfPageContent() {
+    putConfigRefs("/content/site1/page1/jcr:content/par/comp1");
+
+    // e.g. sling:configRef changed in page content
+    underTest.onChange(List.of(change(ChangeType.CHANGED, "/content/site1/page1/jcr:content")));
+    assertNull(underTest.getConfigRefs("/content/site1/page1/jcr:content/par/comp1", BUCKETS));
+  }
+
+  @Test
+  void testConfigRefs_InvalidatedDuringLookup() {
+    long generation = underTest.getGeneration();
+    underTest.onChange(List.of(change(ChangeType.CHANGED, "/content/site2/jcr:content")));
+
+    // value read before invalidation is not stored
+    underTest.putConfigRefs("/content/site1/page1", BUCKETS, REFS, generation);
+    assertNull(underTest.getConfigRefs("/content/site1/page1", BUCKETS));
+  }
+
+  @Test
+  void testMissing() {
+    String path = "/content/site1/tools/config/jcr:content/sling:configs/config1";
+    assertFalse(underTest.isKnownMissing(path));
+    underTest.putMissing(path, underTest.getGeneration());
+    assertTrue(underTest.isKnownMissing(path));
+
+    // property changes do not affect existence
+    underTest.onChange(List.of(change(ChangeType.CHANGED, "/content/site1/tools/config/jcr:content")));
+    assertTrue(underTest.isKnownMissing(path));
+
+    underTest.onChange(List.of(change(ChangeType.ADDED, "/content/site1/tools/config/jcr:content/sling:configs")));
+    assertFalse(underTest.isKnownMissing(path));
+  }
+
+  @Test
+  void testMissing_InvalidatedDuringLookup() {
+    String path = "/content/site1/tools/config/jcr:content/sling:configs/config1";
+    long generation = underTest.getGeneration();
+    underTest.onChange(List.of(change(ChangeType.ADDED, path)));
+
+    // value read before invalidation is not stored
+    underTest.putMissing(path, generation);
+    assertFalse(underTest.isKnownMissing(path));
+  }
+
+  @Test
+  void testMissing_InvalidateAfterWrite() {
+    String path = "/content/site1/tools/config/jcr:content/sling:configs/config1";
+    underTest.putMissing(path, underTest.getGeneration());
+    underTest.invalidate(path);
+    assertFalse(underTest.isKnownMissing(path));
+  }
+
+  private void putConfigRefs(String contentPath) {
+    underTest.putConfigRefs(contentPath, BUCKETS, REFS, underTest.getGeneration());
+  }
+
+  private static ResourceChange change(ChangeType changeType, String path) {
+    return new ResourceChange(changeType, path, false);
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static org.apache.sling.testing.mock.caconfig.ContextPlugins.CACONFIG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Calendar;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.caconfig.management.ConfigurationManagementSettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.day.cq.wcm.api.NameConstants;
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.PageManager;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextBuilder;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+@ExtendWith(AemContextExtension.class)
+class ConfigWriteContextTest {
+
+  final AemContext context = new AemContextBuilder()
+      .plugin(CACONFIG)
+      .build();
+
+  private PageManager pageManager;
+  private ConfigWriteContext underTest;
+
+  @BeforeEach
+  void setUp() {
+    context.create().page("/content/site1");
+    context.create().page("/content/site1/tools");
+    context.create().page("/content/site1/tools/config");
+    context.create().page("/content/site1/tools/config/item1");
+    pageManager = spy(context.pageManager());
+    underTest = new ConfigWriteContext(context.resourceResolver(), pageManager);
+  }
+
+  @Test
+  void testUpdatePageLastMod() {
+    underTest.touch("/content/site1/tools/config/jcr:content/sling:configs/config1");
+    underTest.touch("/content/site1/tools/config/jcr:content/sling:configs/config2");
+    underTest.touch("/content/site1/tools/config/jcr:content");
+    underTest.touch("/content/site1/tools/config/item1/jcr:content");
+    underTest.updatePageLastMod();
+
+    // each page is looked up and stamped only once, with the same timestamp
+    verify(pageManager, times(2)).getContainingPage(anyString());
+    Calendar lastMod1 = getLastMod("/content/site1/tools/config");
+    Calendar lastMod2 = getLastMod("/content/site1/tools/config/item1");
+    assertNotNull(lastMod1);
+    assertEquals(lastMod1, lastMod2);
+  }
+
+  @Test
+  void testUpdatePageLastMod_NothingTouched() {
+    underTest.updatePageLastMod();
+    verify(pageManager, times(0)).getContainingPage(anyString());
+  }
+
+  @Test
+  void testEnsureContainingPage_AncestorsCheckedOnce() {
+    ResourceResolver resolver = spy(context.resourceResolver());
+    ConfigWriteContext writeContext = new ConfigWriteContext(resolver, pageManager);
+    ConfigurationManagementSettings settings = context.getService(ConfigurationManagementSettings.class);
+
+    PersistenceUtils.ensureContainingPage(writeContext, "/conf/site1/sling:configs/config1/item0/jcr:content", null, settings);
+
+    // parent is known from first call
+    clearInvocations(resolver);
+    PersistenceUtils.ensureContainingPage(writeContext, "/conf/site1/sling:configs/config1/item1/jcr:content", null, settings);
+    verify(resolver, never()).getResource("/conf/site1/sling:configs/config1");
+
+    // created page is known from second call
+    clearInvocations(resolver);
+    PersistenceUtils.ensureContainingPage(writeContext, "/conf/site1/sling:configs/config1/item1/jcr:content", null, settings);
+    verify(resolver, never()).getResource(anyString());
+
+    assertNotNull(context.pageManager().getPage("/conf/site1/sling:configs/config1/item0"));
+    assertNotNull(context.pageManager().getPage("/conf/site1/sling:configs/config1/item1"));
+  }
+
+  @Test
+  void testEnsureContainingPage_ParentTemplate() {
+    context.create().page("/content/site2");
+    ResourceResolver resolver = spy(context.resourceResolver());
+    ConfigWriteContext writeContext = new ConfigWriteContext(resolver, pageManager);
+    ConfigurationManagementSettings settings = context.getService(ConfigurationManagementSettings.class);
+
+    PersistenceUtils.ensureContainingPage(writeContext, "/content/site2/tools/config/jcr:content/sling:configs/config1",
+        "/apps/app1/templates/configEditor", null, "/apps/app1/templates/structurePage", settings);
+    clearInvocations(resolver);
+    PersistenceUtils.ensureContainingPage(writeContext, "/content/site2/tools/config2/jcr:content/sling:configs/config1",
+        "/apps/app1/templates/configEditor", null, "/apps/app1/templates/structurePage", settings);
+
+    // intermediate page is created with parent template once
+    Page toolsPage = context.pageManager().getPage("/content/site2/tools");
+    assertNotNull(toolsPage);
+    assertEquals("/apps/app1/templates/structurePage", toolsPage.getProperties().get(NameConstants.PN_TEMPLATE, String.class));
+    assertEquals("/apps/app1/templates/configEditor",
+        context.pageManager().getPage("/content/site2/tools/config2").getProperties().get(NameConstants.PN_TEMPLATE, String.class));
+    verify(resolver, never()).getResource("/content/site2/tools");
+    verify(resolver, never()).getResource("/content/site2");
+  }
+
+  private Calendar getLastMod(String pagePath) {
+    Page page = context.pageManager().getPage(pagePath);
+    return page.getContentResource().getValueMap().get(NameConstants.PN_LAST_MOD, Calendar.class);
+  }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static org.apache.sling.testing.mock.caconfig.ContextPlugins.CACONFIG;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.caconfig.spi.ConfigurationPersistData;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceStrategy2;
+import org.apache.sling.hamcrest.ResourceMatchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.osgi.framework.Constants;
+
+import com.day.cq.wcm.api.Page;
+
+import io.wcm.caconfig.extensions.persistence.ConfigurationBatchPersistence;
+import io.wcm.caconfig.extensions.persistence.ConfigurationBatchResult;
+import io.wcm.caconfig.extensions.persistence.ConfigurationBatchResult.ChunkFailure;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextBuilder;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+@ExtendWith(AemContextExtension.class)
+@SuppressWarnings("null")
+class ConfigurationBatchPersistenceImplTest {
+
+  private static final String TOOLS_CONFIG_PATH = "/content/region1/site1/tools/config/jcr:content/sling:configs/config";
+  private static final String PAGE_CONFIG_PATH = "/conf/region1/site1/sling:configs/config";
+  private static final String CUSTOM_CONFIG_PATH = "/custom/config";
+
+  final AemContext context = new AemContextBuilder()
+      .plugin(CACONFIG)
+      .build();
+
+  private ConfigurationPersistenceStrategy2 customStrategy;
+  private ConfigurationBatchPersistence underTest;
+
+  @BeforeEach
+  void setUp() throws PersistenceException {
+    context.create().page("/content/region1");
+    context.create().page("/content/region1/site1");
+    context.create().resource("/conf/region1/site1");
+    context.resourceResolver().commit();
+
+    context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(),
+        "enabled", true,
+        "batchCommitSize", 2);
+    context.registerInjectActivateService(new PagePersistenceStrategy(),
+        "enabled", true,
+        "batchCommitSize", 2);
+
+    // persistence strategy without batch support, ranked higher than the page-based persistence strategies
+    customStrategy = mock(ConfigurationPersistenceStrategy2.class);
+    when(customStrategy.persistConfiguration(any(), eq(CUSTOM_CONFIG_PATH + 1), any())).thenReturn(true);
+    when(customStrategy.persistConfiguration(any(), eq(CUSTOM_CONFIG_PATH + 2), any()))
+        .thenThrow(new ConfigurationPersistenceException("failed"));
+    context.registerService(ConfigurationPersistenceStrategy2.class, customStrategy, Constants.SERVICE_RANKING, 3000);
+
+    underTest = context.registerInjectActivateService(new ConfigurationBatchPersistenceImpl());
+  }
+
+  @Test
+  void testDispatchByRanking() {
+    Map<String, ConfigurationPersistData> configurations = new LinkedHashMap<>();
+    for (int i = 1; i <= 3; i++) {
+      configurations.put(PAGE_CONFIG_PATH + i, data("page" + i));
+      configurations.put(TOOLS_CONFIG_PATH + i, data("tools" + i));
+    }
+    configurations.put(CUSTOM_CONFIG_PATH + 1, data("custom1"));
+
+    ConfigurationBatchResult result = underTest.persistConfigurations(context.resourceResolver(), configurations);
+
+    assertTrue(result.isSuccessful());
+    assertEquals(List.of(), result.getSkippedPaths());
+    assertEquals(List.of(CUSTOM_CONFIG_PATH + 1,
+        PAGE_CONFIG_PATH + 1, PAGE_CONFIG_PATH + 2, PAGE_CONFIG_PATH + 3,
+        TOOLS_CONFIG_PATH + 1, TOOLS_CONFIG_PATH + 2, TOOLS_CONFIG_PATH + 3), result.getPersistedPaths());
+
+    for (int i = 1; i <= 3; i++) {
+      // tools config paths are handled by the higher ranked tools config page persistence strategy
+      assertThat(context.resourceResolver().getResource(TOOLS_CONFIG_PATH + i), ResourceMatchers.props("prop1", "tools" + i));
+      assertNull(context.resourceResolver().getResource(TOOLS_CONFIG_PATH + i + "/jcr:content"));
+      Page configPage = context.pageManager().getPage(PAGE_CONFIG_PATH + i);
+      assertThat(configPage.getContentResource(), ResourceMatchers.props("prop1", "page" + i));
+    }
+  }
+
+  @Test
+  void testFailureChunkIndexes() throws PersistenceException {
+    Map<String, ConfigurationPersistData> configurations = new LinkedHashMap<>();
+    configurations.put(CUSTOM_CONFIG_PATH + 1, data("custom1"));
+    configurations.put(CUSTOM_CONFIG_PATH + 2, data("custom2"));
+    for (int i = 1; i <= 3; i++) {
+      configurations.put(TOOLS_CONFIG_PATH + i, data("tools" + i));
+    }
+    for (int i = 1; i <= 3; i++) {
+      configurations.put(PAGE_CONFIG_PATH + i, data("page" + i));
+    }
+
+    // fail second chunk of page persistence strategy
+    ResourceResolver resolver = spy(context.resourceResolver());
+    doCallRealMethod().doCallRealMethod().doCallRealMethod()
+        .doThrow(new PersistenceException("commit failed"))
+        .doCallRealMethod()
+        .when(resolver).commit();
+
+    ConfigurationBatchResult result = underTest.persistConfigurations(resolver, configurations);
+
+    assertEquals(2, result.getFailures().size());
+    // custom configurations are counted as one chunk each, before the chunks of the page-based persistence strategies
+    ChunkFailure customFailure = result.getFailures().get(0);
+    assertEquals(1, customFailure.getChunkIndex());
+    assertEquals(List.of(CUSTOM_CONFIG_PATH + 2), customFailure.getPaths());
+    ChunkFailure pageFailure = result.getFailures().get(1);
+    assertEquals(5, pageFailure.getChunkIndex());
+    assertEquals(List.of(PAGE_CONFIG_PATH + 3), pageFailure.getPaths());
+    assertEquals(List.of(CUSTOM_CONFIG_PATH + 1,
+        TOOLS_CONFIG_PATH + 1, TOOLS_CONFIG_PATH + 2, TOOLS_CONFIG_PATH + 3,
+        PAGE_CONFIG_PATH + 1, PAGE_CONFIG_PATH + 2), result.getPersistedPaths());
+  }
+
+  @Test
+  void testPendingChanges() throws PersistenceException {
+    ResourceResolver resolver = context.resourceResolver();
+    context.create().resource("/content/pending");
+    Map<String, ConfigurationPersistData> configurations = Map.of(PAGE_CONFIG_PATH + 1, data("page1"));
+
+    assertThrows(ConfigurationPersistenceException.class, () -> underTest.persistConfigurations(resolver, configurations));
+    assertTrue(resolver.hasChanges());
+    assertNull(context.pageManager().getPage(PAGE_CONFIG_PATH + 1));
+  }
+
+  private static ConfigurationPersistData data(String value) {
+    return new ConfigurationPersistData(Map.of("prop1", value));
+  }
+
+}
@@ -27,12 +27,28 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import java.util.Calendar;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+import javax.jcr.InvalidItemStateException;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.caconfig.ConfigurationBuilder;
 import org.apache.sling.caconfig.management.ConfigurationManager;
+import org.apache.sling.caconfig.spi.ConfigurationPersistData;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
 import org.apache.sling.hamcrest.ResourceMatchers;
 import org.apache.sling.testing.mock.osgi.MockOsgi;
 import org.jetbrains.annotations.NotNull;
@@ -40,8 +56,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import com.day.cq.wcm.api.NameConstants;
 import com.day.cq.wcm.api.Page;
 
+import io.wcm.caconfig.extensions.persistence.ConfigurationBatchResult;
 import io.wcm.caconfig.extensions.persistence.example.ListConfig;
 import io.wcm.caconfig.extensions.persistence.example.ListNestedConfig;
 import io.wcm.caconfig.extensions.persistence.example.NestedConfig;
@@ -162,6 +180,71 @@ class PagePersistenceStrategyTest {
     assertEquals(234, config2.intParam());
   }
 
+  @Test
+  void testListConfig_UnchangedItems() throws PersistenceException {
+    context.registerInjectActivateService(new PagePersistenceStrategy(), "enabled", true);
+
+    writeConfigurationCollection(context, contentPage.getPath(), ListConfig.class.getName(), List.of(
+        ImmutableValueMap.of("stringParam", "value1", "intParam", 123),
+        ImmutableValueMap.of("stringParam", "value2", "intParam", 234)));
+
+    // reset last modified date of item pages to detect updates
+    Calendar cal = Calendar.getInstance();
+    cal.add(Calendar.HOUR, -1);
+    Page configPage1 = context.pageManager().getPage("/conf/test/site1/sling:configs/" + ListConfig.class.getName() + "/item0");
+    Page configPage2 = context.pageManager().getPage("/conf/test/site1/sling:configs/" + ListConfig.class.getName() + "/item1");
+    Objects.requireNonNull(configPage1.getContentResource().adaptTo(ModifiableValueMap.class)).put(NameConstants.PN_LAST_MOD, cal);
+    Objects.requireNonNull(configPage2.getContentResource().adaptTo(ModifiableValueMap.class)).put(NameConstants.PN_LAST_MOD, cal);
+    context.resourceResolver().commit();
+
+    // change only second item
+    writeConfigurationCollection(context, contentPage.getPath(), ListConfig.class.getName(), List.of(
+        ImmutableValueMap.of("stringParam", "value1", "intParam", 123),
+        ImmutableValueMap.of("stringParam", "value2a", "intParam", 234)));
+
+    assertEquals(cal, configPage1.getContentResource().getValueMap().get(NameConstants.PN_LAST_MOD, Calendar.class));
+    assertTrue(cal.before(configPage2.getContentResource().getValueMap().get(NameConstants.PN_LAST_MOD, Calendar.class)));
+    assertThat(configPage2.getContentResource(), ResourceMatchers.props("stringParam", "value2a", "intParam", 234));
+  }
+
+  @Test
+  void testPersistConfigurations() {
+    PagePersistenceStrategy underTest = context.registerInjectActivateService(new PagePersistenceStrategy(),
+        "enabled", true,
+        "batchCommitSize", 2);
+
+    Map<String, ConfigurationPersistData> configurations = new LinkedHashMap<>();
+    for (int i = 1; i <= 3; i++) {
+      configurations.put("/conf/test/site1/sling:configs/config" + i, new ConfigurationPersistData(Map.of("prop1", "value" + i)));
+    }
+    ConfigurationBatchResult result = underTest.persistConfigurations(context.resourceResolver(), configurations);
+
+    assertTrue(result.isSuccessful());
+    assertEquals(3, result.getPersistedPaths().size());
+    for (int i = 1; i <= 3; i++) {
+      Page configPage = context.pageManager().getPage("/conf/test/site1/sling:configs/config" + i);
+      assertThat(configPage.getContentResource(), ResourceMatchers.props("prop1", "value" + i));
+    }
+  }
+
+  @Test
+  void testPersistConfigurations_PendingChanges() throws PersistenceException {
+    PagePersistenceStrategy underTest = context.registerInjectActivateService(new PagePersistenceStrategy(),
+        "enabled", true);
+
+    ResourceResolver resolver = context.resourceResolver();
+    resolver.create(resolver.getResource("/content"), "pending", Map.of());
+
+    Map<String, ConfigurationPersistData> configurations = Map.of("/conf/test/site1/sling:configs/config1",
+        new ConfigurationPersistData(Map.of("prop1", "value1")));
+    assertThrows(ConfigurationPersistenceException.class, () -> underTest.persistConfigurations(resolver, configurations));
+
+    // pending changes are neither committed nor reverted
+    assertTrue(resolver.hasChanges());
+    assertNotNull(resolver.getResource("/content/pending"));
+    assertNull(context.pageManager().getPage("/conf/test/site1/sling:configs/config1"));
+  }
+
   @Test
   void testListConfig_Nested() {
     context.registerInjectActivateService(new PagePersistenceStrategy(), "enabled", true);
@@ -348,4 +431,24 @@ class PagePersistenceStrategyTest {
 
   }
 
+  @Test
+  void testSimpleConfig_CommitConflictRetry() throws PersistenceException {
+    PagePersistenceStrategy underTest = context.registerInjectActivateService(new PagePersistenceStrategy(),
+        "enabled", true,
+        "commitRetries", 2,
+        "commitRetryInitialBackoff", 0);
+    ResourceResolver resolver = spy(context.resourceResolver());
+    doThrow(new PersistenceException("commit failed", new InvalidItemStateException("Unresolved conflicts")))
+        .doCallRealMethod()
+        .when(resolver).commit();
+
+    String configResourcePath = "/conf/test/site1/sling:configs/config1";
+    assertTrue(underTest.persistConfiguration(resolver, configResourcePath, new ConfigurationPersistData(Map.of("prop1", "value1"))));
+
+    // changes are re-applied after refreshing the resolver
+    verify(resolver, times(2)).commit();
+    verify(resolver).refresh();
+    assertThat(context.resourceResolver().getResource(configResourcePath + "/jcr:content"), ResourceMatchers.props("prop1", "value1"));
+  }
+
 }
@@ -0,0 +1,252 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static org.apache.sling.testing.mock.caconfig.ContextPlugins.CACONFIG;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import javax.jcr.InvalidItemStateException;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.caconfig.spi.ConfigurationPersistData;
+import org.apache.sling.hamcrest.ResourceMatchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextBuilder;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+@ExtendWith(AemContextExtension.class)
+@SuppressWarnings("null")
+class PageWriteLocksTest {
+
+  private static final int WRITERS = 16;
+  private static final int WRITES_PER_WRITER = 10;
+  private static final String PAGE_PATH = "/content/site1/tools/config";
+  private static final String TOOLS_CONFIG_PATH = "/content/region1/site1/tools/config/jcr:content/sling:configs/config";
+  private static final String PAGE_CONFIG_PATH = "/conf/region1/site1/sling:configs/config1";
+
+  final AemContext context = new AemContextBuilder()
+      .plugin(CACONFIG)
+      .build();
+
+  private ExecutorService executor;
+  private final AtomicInteger concurrentCommits = new AtomicInteger();
+  private final AtomicBoolean overlappingCommits = new AtomicBoolean();
+
+  @BeforeEach
+  void setUp() throws PersistenceException {
+    executor = Executors.newFixedThreadPool(WRITERS);
+    context.create().page("/content/region1");
+    context.create().page("/content/region1/site1");
+    context.create().resource("/conf/region1/site1");
+    context.resourceResolver().commit();
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void testGetStripe() {
+    PageWriteLocks underTest = new PageWriteLocks(PageWriteLocks.DEFAULT_STRIPES);
+    assertEquals(underTest.getStripe(PAGE_PATH + "/jcr:content/sling:configs/config1"),
+        underTest.getStripe(PAGE_PATH + "/jcr:content/sling:configs/config2"));
+    assertEquals(underTest.getStripe(PAGE_PATH + "/jcr:content"), underTest.getStripe(PAGE_PATH));
+  }
+
+  @Test
+  void testConcurrentWritesSamePage_ToolsConfigPagePersistenceStrategy() throws Exception {
+    ToolsConfigPagePersistenceStrategy underTest = context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(),
+        "enabled", true,
+        "pageWriteLocksEnabled", true);
+
+    // each writer writes its own configuration to the same configuration page
+    runWriters((writer, write) -> underTest.persistConfiguration(newResolver(), TOOLS_CONFIG_PATH + writer,
+        new ConfigurationPersistData(Map.of("prop1", "value" + write))));
+
+    assertFalse(overlappingCommits.get(), "overlapping commits to same page");
+    for (int writer = 0; writer < WRITERS; writer++) {
+      assertThat(context.resourceResolver().getResource(TOOLS_CONFIG_PATH + writer),
+          ResourceMatchers.props("prop1", "value" + (WRITES_PER_WRITER - 1)));
+    }
+  }
+
+  @Test
+  void testConcurrentWritesSamePage_PagePersistenceStrategy() throws Exception {
+    PagePersistenceStrategy underTest = context.registerInjectActivateService(new PagePersistenceStrategy(),
+        "enabled", true,
+        "pageWriteLocksEnabled", true);
+
+    // all writers write the same configuration page
+    runWriters((writer, write) -> underTest.persistConfiguration(newResolver(), PAGE_CONFIG_PATH,
+        new ConfigurationPersistData(Map.of("prop" + writer, "value" + write))));
+
+    assertFalse(overlappingCommits.get(), "overlapping commits to same page");
+    assertTrue(context.resourceResolver().getResource(PAGE_CONFIG_PATH + "/jcr:content").getValueMap().keySet().stream()
+        .anyMatch(name -> name.startsWith("prop")));
+  }
+
+  @Test
+  @SuppressWarnings("java:S2925") // backoff of the conflicting writer
+  void testLockReleasedDuringRetryBackoff() throws Exception {
+    ToolsConfigPagePersistenceStrategy underTest = context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(),
+        "enabled", true,
+        "pageWriteLocksEnabled", true,
+        "commitRetries", 1,
+        "commitRetryInitialBackoff", 4000,
+        "commitRetryMaxBackoff", 4000);
+
+    // first commit of writer 1 fails with a conflict, it waits at least 2s before retrying
+    CountDownLatch conflict = new CountDownLatch(1);
+    ResourceResolver resolver1 = newResolver();
+    doAnswer(invocation -> {
+      conflict.countDown();
+      throw new PersistenceException("commit failed", new InvalidItemStateException("Unresolved conflicts"));
+    }).doCallRealMethod().when(resolver1).commit();
+    Future<Boolean> writer1 = executor.submit(() -> underTest.persistConfiguration(resolver1, TOOLS_CONFIG_PATH + 1,
+        new ConfigurationPersistData(Map.of("prop1", "value1"))));
+    assertTrue(conflict.await(5, TimeUnit.SECONDS));
+
+    // writer 2 writes to the same page while writer 1 is waiting
+    Future<Boolean> writer2 = executor.submit(() -> underTest.persistConfiguration(newResolver(), TOOLS_CONFIG_PATH + 2,
+        new ConfigurationPersistData(Map.of("prop1", "value2"))));
+    assertTrue(writer2.get(1, TimeUnit.SECONDS));
+    assertFalse(writer1.isDone());
+
+    assertTrue(writer1.get(10, TimeUnit.SECONDS));
+    assertThat(context.resourceResolver().getResource(TOOLS_CONFIG_PATH + 1), ResourceMatchers.props("prop1", "value1"));
+    assertThat(context.resourceResolver().getResource(TOOLS_CONFIG_PATH + 2), ResourceMatchers.props("prop1", "value2"));
+  }
+
+  @Test
+  void testDifferentPagesInParallel() throws Exception {
+    PageWriteLocks underTest = new PageWriteLocks(PageWriteLocks.DEFAULT_STRIPES);
+    String page1 = "/content/site1/tools/config/jcr:content";
+    String page2 = null;
+    for (int i = 2; page2 == null; i++) {
+      String candidate = "/content/site" + i + "/tools/config/jcr:content";
+      if (underTest.getStripe(candidate) != underTest.getStripe(page1)) {
+        page2 = candidate;
+      }
+    }
+    String otherPage = page2;
+
+    CountDownLatch page1Locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> writer1 = executor.submit(() -> underTest.execute(page1, () -> {
+      page1Locked.countDown();
+      awaitUninterruptibly(release);
+      return null;
+    }));
+    assertTrue(page1Locked.await(5, TimeUnit.SECONDS));
+
+    // write to other page does not wait for the first one
+    Future<Boolean> writer2 = executor.submit(() -> underTest.execute(otherPage, () -> true));
+    assertTrue(writer2.get(5, TimeUnit.SECONDS));
+
+    release.countDown();
+    writer1.get(5, TimeUnit.SECONDS);
+    assertNotEquals(underTest.getStripe(page1), underTest.getStripe(otherPage));
+  }
+
+  /**
+   * Runs concurrent writers, each with its own resource resolver per write operation.
+   * @param write Executes write operation for the given writer and write index
+   */
+  private void runWriters(BiFunction<Integer, Integer, Boolean> write) throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> writers = new ArrayList<>();
+    for (int i = 0; i < WRITERS; i++) {
+      int writer = i;
+      writers.add(executor.submit(() -> {
+        awaitUninterruptibly(start);
+        for (int j = 0; j < WRITES_PER_WRITER; j++) {
+          assertTrue(write.apply(writer, j));
+        }
+      }));
+    }
+    start.countDown();
+    for (Future<?> writer : writers) {
+      writer.get(60, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * @return Resource resolver that records if commits overlap
+   */
+  private ResourceResolver newResolver() {
+    try {
+      ResourceResolver resolver = spy(context.getService(ResourceResolverFactory.class).getServiceResourceResolver(null));
+      doAnswer(invocation -> {
+        if (concurrentCommits.incrementAndGet() > 1) {
+          overlappingCommits.set(true);
+        }
+        try {
+          // widen the window for overlapping commits
+          Thread.sleep(1);
+          return invocation.callRealMethod();
+        }
+        finally {
+          concurrentCommits.decrementAndGet();
+        }
+      }).when(resolver).commit();
+      return resolver;
+    }
+    catch (LoginException | PersistenceException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      latch.await();
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class PathPatternTest {
+
+  private static final List<String> PATHS = List.of(
+      "/content",
+      "/content/",
+      "/content/site1",
+      "/content/site1/tools/config",
+      "/content/site1/tools/config/jcr:content",
+      "/content/site1/tools/config/jcr:content/sling:configs/x",
+      "/content/site1/tools/config/jcr:contentX",
+      "/content/site1/tools/config/jcr:contentX/tools/config/jcr:content",
+      "/content/site1/tools/config/jcr:content\n",
+      "/content/site1\n/tools/config/jcr:content",
+      "/contentX/site1",
+      "/conf/site1",
+      "/tools/config/jcr:content",
+      "/content/region1",
+      "/content/region1/site1",
+      "/content/region2/site1/tools/other-config/jcr:content",
+      "");
+
+  /**
+   * Relative config paths shipped as defaults or used in the documentation and tests of this repository.
+   */
+  static Stream<String> shippedRelativeConfigPaths() {
+    return Stream.of(
+        getConfigDefault("relativeConfigPath"),
+        "/tools/other-config/jcr:content");
+  }
+
+  /**
+   * Context path expressions shipped as defaults or used in the documentation and tests of this repository.
+   */
+  static Stream<String> shippedContextPathRegex() {
+    return Stream.of(
+        getConfigDefault("contextPathRegex"),
+        "^(/content/.+)$",
+        "^/content/region1(/.+)?$",
+        "^/content/region2(/.+)?$");
+  }
+
+  @Test
+  void testRelativeConfigPath() {
+    assertEquivalentToRegex(PathPattern.forRelativeConfigPath("/tools/config/jcr:content"),
+        "^.*/tools/config/jcr:content(/.*)?$");
+    assertTrue(PathPattern.forRelativeConfigPath("/tools/config/jcr:content").matches("/content/site1/tools/config/jcr:content"));
+    assertFalse(PathPattern.forRelativeConfigPath("/tools/config/jcr:content").matches("/content/site1/tools/config"));
+  }
+
+  @Test
+  void testRelativeConfigPath_Regex() {
+    assertEquivalentToRegex(PathPattern.forRelativeConfigPath("/tools/(config|settings)/jcr:content"),
+        "^.*/tools/(config|settings)/jcr:content(/.*)?$");
+  }
+
+  @ParameterizedTest
+  @MethodSource("shippedRelativeConfigPaths")
+  void testShippedRelativeConfigPath(String relativeConfigPath) {
+    assertEquivalentToRegex(PathPattern.forRelativeConfigPath(relativeConfigPath),
+        String.format("^.*%s(/.*)?$", relativeConfigPath));
+  }
+
+  @ParameterizedTest
+  @MethodSource("shippedContextPathRegex")
+  void testShippedContextPathRegex(String contextPathRegex) {
+    assertEquivalentToRegex(PathPattern.forRegex(contextPathRegex), contextPathRegex);
+  }
+
+  @Test
+  void testRegex_Prefix() {
+    assertEquivalentToRegex(PathPattern.forRegex("^/content(/.+)$"), "^/content(/.+)$");
+    assertTrue(PathPattern.forRegex("^/content(/.+)$").matches("/content/site1"));
+    assertFalse(PathPattern.forRegex("^/content(/.+)$").matches("/content"));
+  }
+
+  @Test
+  void testRegex_Other() {
+    assertEquivalentToRegex(PathPattern.forRegex("^/content/site\\d+(/.+)$"), "^/content/site\\d+(/.+)$");
+    assertEquivalentToRegex(PathPattern.forRegex("^/(content|conf)(/.+)$"), "^/(content|conf)(/.+)$");
+    assertEquivalentToRegex(PathPattern.forRegex("/content/site1"), "/content/site1");
+  }
+
+  private static String getConfigDefault(String name) {
+    try {
+      return (String)ToolsConfigPagePersistenceStrategy.Config.class.getMethod(name).getDefaultValue();
+    }
+    catch (NoSuchMethodException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static void assertEquivalentToRegex(PathPattern pathPattern, String regex) {
+    for (String path : PATHS) {
+      assertEquals(Pattern.matches(regex, path), pathPattern.matches(path), path);
+    }
+  }
+
+}
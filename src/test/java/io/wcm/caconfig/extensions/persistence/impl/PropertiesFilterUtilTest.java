@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.sling.caconfig.management.ConfigurationManagementSettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PropertiesFilterUtilTest {
+
+  private ConfigurationManagementSettings settings;
+
+  @BeforeEach
+  void setUp() {
+    settings = newSettings();
+  }
+
+  @Test
+  void testRemoveIgnoredProperties() {
+    Set<String> propertyNames = new HashSet<>(Set.of("jcr:primaryType", "cq:lastModified", "prop1"));
+    PropertiesFilterUtil.removeIgnoredProperties(propertyNames, settings);
+    assertEquals(Set.of("prop1"), propertyNames);
+    verify(settings).getIgnoredPropertyNames(Set.of("jcr:primaryType", "cq:lastModified", "prop1"));
+  }
+
+  @Test
+  void testRemoveIgnoredProperties_Memoized() {
+    PropertiesFilterUtil.removeIgnoredProperties(new HashSet<>(Set.of("jcr:primaryType", "prop1")), settings);
+
+    // only unknown property names are matched
+    Set<String> propertyNames = new HashSet<>(Set.of("jcr:primaryType", "prop1", "cq:lastModified"));
+    PropertiesFilterUtil.removeIgnoredProperties(propertyNames, settings);
+    assertEquals(Set.of("prop1"), propertyNames);
+    verify(settings).getIgnoredPropertyNames(Set.of("cq:lastModified"));
+
+    // all property names known
+    propertyNames = new HashSet<>(Set.of("jcr:primaryType", "prop1"));
+    PropertiesFilterUtil.removeIgnoredProperties(propertyNames, settings);
+    assertEquals(Set.of("prop1"), propertyNames);
+    verify(settings, never()).getIgnoredPropertyNames(Set.of("jcr:primaryType", "prop1", "cq:lastModified"));
+  }
+
+  @Test
+  void testRemoveIgnoredProperties_OtherSettings() {
+    PropertiesFilterUtil.removeIgnoredProperties(new HashSet<>(Set.of("jcr:primaryType", "prop1")), settings);
+
+    ConfigurationManagementSettings otherSettings = newSettings();
+    Set<String> propertyNames = new HashSet<>(Set.of("jcr:primaryType", "prop1"));
+    PropertiesFilterUtil.removeIgnoredProperties(propertyNames, otherSettings);
+    assertEquals(Set.of("prop1"), propertyNames);
+    verify(otherSettings).getIgnoredPropertyNames(Set.of("jcr:primaryType", "prop1"));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ConfigurationManagementSettings newSettings() {
+    ConfigurationManagementSettings settings = mock(ConfigurationManagementSettings.class);
+    when(settings.getIgnoredPropertyNames(anySet())).then(invocation -> ((Set<String>)invocation.getArgument(0)).stream()
+        .filter(name -> name.matches("^(jcr|cq):.+"))
+        .collect(Collectors.toSet()));
+    return settings;
+  }
+
+}
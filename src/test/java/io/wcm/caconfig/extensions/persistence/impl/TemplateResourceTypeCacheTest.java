@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static org.apache.sling.api.resource.ResourceResolver.PROPERTY_RESOURCE_TYPE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+@ExtendWith(AemContextExtension.class)
+class TemplateResourceTypeCacheTest {
+
+  private static final String TEMPLATE = "/apps/app1/templates/configEditor";
+  private static final String EDITABLE_TEMPLATE = "/conf/app1/settings/wcm/templates/configEditor";
+
+  final AemContext context = new AemContext();
+
+  private ResourceResolver resourceResolver;
+  private TemplateResourceTypeCache underTest;
+
+  @BeforeEach
+  void setUp() {
+    context.create().resource(TEMPLATE + "/jcr:content", PROPERTY_RESOURCE_TYPE, "app1/components/page/configEditor");
+    context.create().resource(EDITABLE_TEMPLATE + "/jcr:content", PROPERTY_RESOURCE_TYPE, "app1/components/page/editable");
+    context.create().resource("/libs/app1/templates/configEditor/jcr:content", PROPERTY_RESOURCE_TYPE, "app1/components/page/libs");
+    resourceResolver = spy(context.resourceResolver());
+    underTest = new TemplateResourceTypeCache();
+  }
+
+  @Test
+  void testGetResourceType() {
+    assertEquals("app1/components/page/configEditor", underTest.getResourceType(resourceResolver, TEMPLATE));
+    assertEquals("app1/components/page/configEditor", underTest.getResourceType(resourceResolver, TEMPLATE));
+    assertEquals("app1/components/page/editable", underTest.getResourceType(resourceResolver, EDITABLE_TEMPLATE));
+    assertEquals("app1/components/page/editable", underTest.getResourceType(resourceResolver, EDITABLE_TEMPLATE));
+    assertNull(underTest.getResourceType(resourceResolver, "/apps/app1/templates/missing"));
+    assertNull(underTest.getResourceType(resourceResolver, "/apps/app1/templates/missing"));
+
+    verify(resourceResolver, times(1)).getResource(TEMPLATE + "/jcr:content");
+    verify(resourceResolver, times(1)).getResource(EDITABLE_TEMPLATE + "/jcr:content");
+    verify(resourceResolver, times(2)).getResource("/apps/app1/templates/missing/jcr:content");
+  }
+
+  @Test
+  void testGetResourceType_NotObserved() {
+    assertEquals("app1/components/page/libs", underTest.getResourceType(resourceResolver, "/libs/app1/templates/configEditor"));
+    assertEquals("app1/components/page/libs", underTest.getResourceType(resourceResolver, "/libs/app1/templates/configEditor"));
+    verify(resourceResolver, times(2)).getResource("/libs/app1/templates/configEditor/jcr:content");
+  }
+
+  @Test
+  void testPreload() {
+    underTest.preload(context.resourceResolver(), TEMPLATE, null);
+    assertEquals("app1/components/page/configEditor", underTest.getResourceType(resourceResolver, TEMPLATE));
+    verify(resourceResolver, never()).getResource(TEMPLATE + "/jcr:content");
+  }
+
+  @Test
+  void testInvalidation() {
+    assertEquals("app1/components/page/configEditor", underTest.getResourceType(resourceResolver, TEMPLATE));
+
+    context.resourceResolver().getResource(TEMPLATE + "/jcr:content").adaptTo(ModifiableValueMap.class)
+        .put(PROPERTY_RESOURCE_TYPE, "app1/components/page/changed");
+    underTest.onChange(List.of(new ResourceChange(ChangeType.CHANGED, TEMPLATE + "/jcr:content", false)));
+
+    assertEquals("app1/components/page/changed", underTest.getResourceType(resourceResolver, TEMPLATE));
+  }
+
+}
@@ -25,24 +25,51 @@ import static org.apache.sling.api.resource.ResourceResolver.PROPERTY_RESOURCE_T
 import static org.apache.sling.testing.mock.caconfig.ContextPlugins.CACONFIG;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
 
+import javax.jcr.InvalidItemStateException;
+
+import org.apache.commons.collections4.IteratorUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceWrapper;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.caconfig.ConfigurationBuilder;
 import org.apache.sling.caconfig.management.ConfigurationManager;
 import org.apache.sling.caconfig.resource.spi.ConfigurationResourceResolvingStrategy;
 import org.apache.sling.caconfig.resource.spi.ContextPathStrategy;
 import org.apache.sling.caconfig.resource.spi.ContextResource;
+import org.apache.sling.caconfig.spi.ConfigurationPersistData;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
 import org.apache.sling.hamcrest.ResourceMatchers;
+import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -51,14 +78,17 @@ import com.day.cq.wcm.api.NameConstants;
 import com.day.cq.wcm.api.Page;
 
 import io.wcm.caconfig.extensions.contextpath.impl.AbsoluteParentContextPathStrategy;
+import io.wcm.caconfig.extensions.persistence.ConfigurationBatchResult;
 import io.wcm.caconfig.extensions.persistence.example.ListConfig;
 import io.wcm.caconfig.extensions.persistence.example.ListNestedConfig;
 import io.wcm.caconfig.extensions.persistence.example.NestedConfig;
 import io.wcm.caconfig.extensions.persistence.example.SimpleConfig;
+import io.wcm.sling.commons.request.RequestContext;
 import io.wcm.sling.commons.resource.ImmutableValueMap;
 import io.wcm.testing.mock.aem.junit5.AemContext;
 import io.wcm.testing.mock.aem.junit5.AemContextBuilder;
 import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import io.wcm.testing.mock.wcmio.sling.MockRequestContext;
 
 @ExtendWith(AemContextExtension.class)
 @SuppressWarnings("null")
@@ -335,6 +365,170 @@ class ToolsConfigPagePersistenceStrategyTest {
     assertEquals(5, config.intParam());
   }
 
+  @Test
+  void testSimpleConfig_Unchanged() throws PersistenceException {
+    writeConfiguration(context, contentPage.getPath(), SimpleConfig.class.getName(),
+        "stringParam", "value1",
+        "intParam", 123);
+
+    // reset last modified date to detect updates
+    Calendar cal = Calendar.getInstance();
+    cal.add(Calendar.HOUR, -1);
+    Resource configPageContent = context.resourceResolver().getResource("/content/region1/site1/en/tools/config/jcr:content");
+    Objects.requireNonNull(configPageContent.adaptTo(ModifiableValueMap.class)).put(NameConstants.PN_LAST_MOD, cal);
+    context.resourceResolver().commit();
+
+    // write same values again: nothing is written
+    writeConfiguration(context, contentPage.getPath(), SimpleConfig.class.getName(),
+        "stringParam", "value1",
+        "intParam", 123);
+    assertEquals(cal, configPageContent.getValueMap().get(NameConstants.PN_LAST_MOD, Calendar.class));
+
+    // write changed value
+    writeConfiguration(context, contentPage.getPath(), SimpleConfig.class.getName(),
+        "stringParam", "value2",
+        "intParam", 123);
+    assertTrue(cal.before(configPageContent.getValueMap().get(NameConstants.PN_LAST_MOD, Calendar.class)));
+    assertThat(context.resourceResolver().getResource("/content/region1/site1/en/tools/config/jcr:content/sling:configs/"
+        + SimpleConfig.class.getName()), ResourceMatchers.props(
+            "stringParam", "value2",
+            "intParam", 123));
+  }
+
+  @Test
+  void testListConfig_Unchanged() throws PersistenceException {
+    List<Map<String, Object>> items = List.of(
+        ImmutableValueMap.of("stringParam", "value1", "intParam", 123),
+        ImmutableValueMap.of("stringParam", "value2", "intParam", 234));
+    writeConfigurationCollection(context, contentPage.getPath(), ListConfig.class.getName(), items);
+
+    // reset last modified date to detect updates
+    Calendar cal = Calendar.getInstance();
+    cal.add(Calendar.HOUR, -1);
+    Resource configPageContent = context.resourceResolver().getResource("/content/region1/site1/en/tools/config/jcr:content");
+    Objects.requireNonNull(configPageContent.adaptTo(ModifiableValueMap.class)).put(NameConstants.PN_LAST_MOD, cal);
+    context.resourceResolver().commit();
+
+    // write same items again: nothing is written
+    writeConfigurationCollection(context, contentPage.getPath(), ListConfig.class.getName(), items);
+    assertEquals(cal, configPageContent.getValueMap().get(NameConstants.PN_LAST_MOD, Calendar.class));
+  }
+
+  @Test
+  void testPersistConfigurations() throws PersistenceException {
+    context.create().page("/content/region1/site2");
+    ToolsConfigPagePersistenceStrategy underTest = context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(),
+        "enabled", true,
+        "batchCommitSize", 2);
+    ResourceResolver resolver = spy(context.resourceResolver());
+
+    Map<String, ConfigurationPersistData> configurations = new LinkedHashMap<>();
+    configurations.put("/content/region1/site1/tools/config/jcr:content/sling:configs/config1",
+        new ConfigurationPersistData(Map.of("prop1", "value1")));
+    configurations.put("/content/region1/site1/tools/config/jcr:content/sling:configs/config2",
+        new ConfigurationPersistData(Map.of("prop1", "value2")));
+    configurations.put("/content/region1/site2/tools/config/jcr:content/sling:configs/config1",
+        new ConfigurationPersistData(Map.of("prop1", "value3")));
+    configurations.put("/conf/region1/site1/sling:configs/config1",
+        new ConfigurationPersistData(Map.of("prop1", "value4")));
+
+    ConfigurationBatchResult result = underTest.persistConfigurations(resolver, configurations);
+
+    assertTrue(result.isSuccessful());
+    assertEquals(List.of(
+        "/content/region1/site1/tools/config/jcr:content/sling:configs/config1",
+        "/content/region1/site1/tools/config/jcr:content/sling:configs/config2",
+        "/content/region1/site2/tools/config/jcr:content/sling:configs/config1"), result.getPersistedPaths());
+    assertEquals(List.of("/conf/region1/site1/sling:configs/config1"), result.getSkippedPaths());
+    verify(resolver, times(2)).commit();
+
+    assertThat(context.resourceResolver().getResource("/content/region1/site1/tools/config/jcr:content/sling:configs/config2"),
+        ResourceMatchers.props("prop1", "value2"));
+    assertThat(context.resourceResolver().getResource("/content/region1/site2/tools/config/jcr:content/sling:configs/config1"),
+        ResourceMatchers.props("prop1", "value3"));
+  }
+
+  @Test
+  void testPersistConfigurations_ChunkFailure() throws PersistenceException {
+    context.create().page("/content/region1/site2");
+    ToolsConfigPagePersistenceStrategy underTest = context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(),
+        "enabled", true,
+        "batchCommitSize", 1);
+    ResourceResolver resolver = spy(context.resourceResolver());
+    doThrow(new PersistenceException("commit failed", new IllegalStateException()))
+        .doCallRealMethod()
+        .when(resolver).commit();
+
+    Map<String, ConfigurationPersistData> configurations = new LinkedHashMap<>();
+    configurations.put("/content/region1/site1/tools/config/jcr:content/sling:configs/config1",
+        new ConfigurationPersistData(Map.of("prop1", "value1")));
+    configurations.put("/content/region1/site2/tools/config/jcr:content/sling:configs/config1",
+        new ConfigurationPersistData(Map.of("prop1", "value2")));
+
+    ConfigurationBatchResult result = underTest.persistConfigurations(resolver, configurations);
+
+    // first chunk is reverted, second chunk is persisted
+    assertFalse(result.isSuccessful());
+    assertEquals(1, result.getFailures().size());
+    ConfigurationBatchResult.ChunkFailure failure = result.getFailures().get(0);
+    assertEquals(0, failure.getChunkIndex());
+    assertEquals(List.of("/content/region1/site1/tools/config/jcr:content/sling:configs/config1"), failure.getPaths());
+    assertEquals(List.of("/content/region1/site2/tools/config/jcr:content/sling:configs/config1"), result.getPersistedPaths());
+
+    assertNull(context.resourceResolver().getResource("/content/region1/site1/tools/config/jcr:content/sling:configs/config1"));
+    assertThat(context.resourceResolver().getResource("/content/region1/site2/tools/config/jcr:content/sling:configs/config1"),
+        ResourceMatchers.props("prop1", "value2"));
+  }
+
+  @Test
+  void testSimpleConfig_CommitConflictRetry() throws PersistenceException {
+    ToolsConfigPagePersistenceStrategy underTest = context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(),
+        "enabled", true,
+        "commitRetries", 2,
+        "commitRetryInitialBackoff", 0);
+    ResourceResolver resolver = spy(context.resourceResolver());
+    doThrow(new PersistenceException("commit failed", new InvalidItemStateException("Unresolved conflicts")))
+        .doCallRealMethod()
+        .when(resolver).commit();
+
+    String configResourcePath = "/content/region1/site1/tools/config/jcr:content/sling:configs/config1";
+    assertTrue(underTest.persistConfiguration(resolver, configResourcePath, new ConfigurationPersistData(Map.of("prop1", "value1"))));
+
+    // changes are re-applied after refreshing the resolver
+    verify(resolver, times(2)).commit();
+    verify(resolver).refresh();
+    assertThat(context.resourceResolver().getResource(configResourcePath), ResourceMatchers.props("prop1", "value1"));
+  }
+
+  @Test
+  void testSimpleConfig_PageWriteLocks() {
+    context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(),
+        "enabled", true,
+        "pageWriteLocksEnabled", true);
+
+    writeConfiguration(context, contentPage.getPath(), SimpleConfig.class.getName(),
+        "stringParam", "value1",
+        "intParam", 123);
+
+    assertThat(context.resourceResolver().getResource("/content/region1/site1/en/tools/config/jcr:content/sling:configs/"
+        + SimpleConfig.class.getName()), ResourceMatchers.props(
+            "stringParam", "value1",
+            "intParam", 123));
+  }
+
+  @Test
+  void testSimpleConfig_CommitConflictNoRetry() throws PersistenceException {
+    ToolsConfigPagePersistenceStrategy underTest = (ToolsConfigPagePersistenceStrategy)context.getService(ConfigurationResourceResolvingStrategy.class);
+    ResourceResolver resolver = spy(context.resourceResolver());
+    doThrow(new PersistenceException("commit failed", new InvalidItemStateException("Unresolved conflicts")))
+        .when(resolver).commit();
+
+    String configResourcePath = "/content/region1/site1/tools/config/jcr:content/sling:configs/config1";
+    ConfigurationPersistData data = new ConfigurationPersistData(Map.of("prop1", "value1"));
+    assertThrows(ConfigurationPersistenceException.class, () -> underTest.persistConfiguration(resolver, configResourcePath, data));
+    verify(resolver, times(1)).commit();
+  }
+
   @Test
   void shouldNotAllowContextPathOutsideOfConfiguredPattern() {
     // create context root resource not in /conf
@@ -351,4 +545,137 @@ class ToolsConfigPagePersistenceStrategyTest {
     assertNull(configPath);
   }
 
+  @Test
+  void testConfigRefsMemoizedPerRequest() {
+    MockRequestContext requestContext = new MockRequestContext();
+    requestContext.setRequest(context.request());
+    context.registerService(RequestContext.class, requestContext);
+
+    assertContextPathDetections(1);
+  }
+
+  @Test
+  void testConfigRefsNotMemoizedOutsideRequest() {
+    // context path detection is done for each lookup, because resource resolver may be refreshed in between
+    assertContextPathDetections(3);
+  }
+
+  private void assertContextPathDetections(int expectedCount) {
+    writeConfiguration(context, contentPage.getPath(), SimpleConfig.class.getName(),
+        "stringParam", "value1");
+
+    ContextPathStrategy contextPathStrategy = mock(ContextPathStrategy.class);
+    when(contextPathStrategy.findContextResources(any())).then(inv -> Collections.emptyIterator());
+    context.registerService(ContextPathStrategy.class, contextPathStrategy);
+
+    ConfigurationResourceResolvingStrategy underTest = context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(),
+        "enabled", true);
+    Resource contentResource = contentPage.getContentResource();
+    Set<String> bucketNames = Set.of("sling:configs");
+    String configName = SimpleConfig.class.getName();
+
+    assertThat(underTest.getResource(contentResource, bucketNames, configName), ResourceMatchers.props("stringParam", "value1"));
+    assertNull(underTest.getResourceCollection(contentResource, bucketNames, configName));
+    assertTrue(underTest.getResourceInheritanceChain(contentResource, bucketNames, configName).hasNext());
+
+    verify(contextPathStrategy, times(expectedCount)).findContextResources(contentResource);
+  }
+
+  @Test
+  void testGetResourceInheritanceChains() {
+    writeConfiguration(context, contentPage.getPath(), SimpleConfig.class.getName(),
+        "stringParam", "value1");
+    writeConfiguration(context, "/content/region1", SimpleConfig.class.getName(),
+        "stringParam", "value2");
+    writeConfiguration(context, "/content/region1", NestedConfig.class.getName(),
+        "stringParam", "value3");
+
+    ToolsConfigPagePersistenceStrategy underTest = (ToolsConfigPagePersistenceStrategy)context.getService(ConfigurationResourceResolvingStrategy.class);
+    Set<String> bucketNames = Set.of("sling:configs");
+    Map<String, Iterator<Resource>> result = underTest.getResourceInheritanceChains(contentPage.getContentResource(), bucketNames,
+        List.of(SimpleConfig.class.getName(), NestedConfig.class.getName(), ListConfig.class.getName()));
+
+    assertEquals(Set.of(SimpleConfig.class.getName(), NestedConfig.class.getName()), result.keySet());
+    for (Map.Entry<String, Iterator<Resource>> entry : result.entrySet()) {
+      // batch result equals result of single lookup
+      assertEquals(toPaths(underTest.getResourceInheritanceChain(contentPage.getContentResource(), bucketNames, entry.getKey())),
+          toPaths(entry.getValue()));
+    }
+  }
+
+  @Test
+  void testGetResourceCollectionInheritanceChain_SingleTraversal() {
+    writeListConfigWithItems(10);
+    ResourceResolver resourceResolver = spy(context.resourceResolver());
+    Resource contentResource = withResourceResolver(contentPage.getContentResource(), resourceResolver);
+    ConfigurationResourceResolvingStrategy underTest = Objects.requireNonNull(context.getService(ConfigurationResourceResolvingStrategy.class));
+    Set<String> bucketNames = Set.of("sling:configs");
+    String configName = ListConfig.class.getName();
+
+    // detect config references
+    assertEquals(2, IteratorUtils.size(underTest.getResourceInheritanceChain(contentResource, bucketNames, configName)));
+    clearInvocations(resourceResolver);
+
+    Collection<Iterator<Resource>> result = underTest.getResourceCollectionInheritanceChain(contentResource, bucketNames, configName);
+    assertEquals(10, result.size());
+    for (Iterator<Resource> chain : result) {
+      assertEquals(2, IteratorUtils.size(chain));
+    }
+
+    // only one lookup per config reference and bucket - independent from number of items
+    verify(resourceResolver, atMost(4)).getResource(anyString());
+  }
+
+  @Test
+  void testGetResourceCollectionInheritanceChain_Lazy() {
+    writeListConfigWithItems(10);
+    ResourceResolver resourceResolver = spy(context.resourceResolver());
+    Resource contentResource = withResourceResolver(contentPage.getContentResource(), resourceResolver);
+    ConfigurationResourceResolvingStrategy underTest = Objects.requireNonNull(context.getService(ConfigurationResourceResolvingStrategy.class));
+    Set<String> bucketNames = Set.of("sling:configs");
+    String configName = ListConfig.class.getName();
+
+    // detect config references
+    assertEquals(2, IteratorUtils.size(underTest.getResourceInheritanceChain(contentResource, bucketNames, configName)));
+    clearInvocations(resourceResolver);
+
+    // read only effective resource of each item: only closest collection parent is looked up
+    Collection<Iterator<Resource>> result = underTest.getResourceCollectionInheritanceChain(contentResource, bucketNames, configName);
+    int index = 0;
+    for (Iterator<Resource> chain : result) {
+      assertThat(chain.next(), ResourceMatchers.path(
+          "/content/region1/site1/en/tools/config/jcr:content/sling:configs/" + configName + "/item" + (index++)));
+    }
+    verify(resourceResolver, times(1)).getResource(anyString());
+
+    // iterate past first element
+    Iterator<Resource> chain = result.iterator().next();
+    assertEquals(2, IteratorUtils.size(chain));
+    assertThrows(NoSuchElementException.class, chain::next);
+  }
+
+  private void writeListConfigWithItems(int count) {
+    List<Map<String, Object>> items = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      items.add(ImmutableValueMap.of("stringParam", "value" + i));
+    }
+    writeConfigurationCollection(context, contentPage.getPath(), ListConfig.class.getName(), items);
+    writeConfigurationCollection(context, "/content/region1", ListConfig.class.getName(), items);
+  }
+
+  private static Resource withResourceResolver(Resource resource, ResourceResolver resourceResolver) {
+    return new ResourceWrapper(resource) {
+      @Override
+      public @NotNull ResourceResolver getResourceResolver() {
+        return resourceResolver;
+      }
+    };
+  }
+
+  private static List<String> toPaths(Iterator<Resource> resources) {
+    List<String> paths = new ArrayList<>();
+    resources.forEachRemaining(resource -> paths.add(resource.getPath()));
+    return paths;
+  }
+
 }
@@ -0,0 +1,251 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static io.wcm.caconfig.extensions.persistence.impl.ChunkedCollectionWriter.PROPERTY_WRITE_OWNER;
+import static io.wcm.caconfig.extensions.persistence.impl.ChunkedCollectionWriter.PROPERTY_WRITE_PROGRESS;
+import static org.apache.sling.testing.mock.caconfig.ContextPlugins.CACONFIG;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.collections4.IteratorUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.caconfig.spi.ConfigurationCollectionPersistData;
+import org.apache.sling.caconfig.spi.ConfigurationPersistData;
+import org.apache.sling.caconfig.spi.ConfigurationPersistenceException;
+import org.apache.sling.hamcrest.ResourceMatchers;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextBuilder;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+@ExtendWith(AemContextExtension.class)
+@SuppressWarnings("null")
+class ToolsConfigPagePersistenceStrategyWithChunkedCollectionTest {
+
+  private static final String CONFIG_PAGE_CONTENT = "/content/region1/site1/tools/config/jcr:content";
+  private static final String COLLECTION_PATH = CONFIG_PAGE_CONTENT + "/sling:configs/listConfig";
+  private static final String STAGING_PATH = CONFIG_PAGE_CONTENT + "/sling:configCollectionStaging/sling:configs/listConfig";
+
+  // resource resolver mock does not support moving resources
+  final AemContext context = new AemContextBuilder(ResourceResolverType.JCR_MOCK)
+      .plugin(CACONFIG)
+      .build();
+
+  private ToolsConfigPagePersistenceStrategy underTest;
+  private ResourceResolver resolver;
+
+  @BeforeEach
+  void setUp() {
+    context.create().page("/content/region1");
+    context.create().page("/content/region1/site1");
+    underTest = context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(),
+        "enabled", true,
+        "collectionChunkSize", 2);
+    resolver = spy(context.resourceResolver());
+  }
+
+  @Test
+  void testWriteCollection() throws PersistenceException {
+    assertTrue(underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, collection(5, "value")));
+
+    assertItems(5, "value");
+    assertNoWorkResources();
+    // staging parent, 3 item chunks, swap
+    verify(resolver, times(5)).commit();
+  }
+
+  @Test
+  void testReplaceCollection() throws PersistenceException {
+    underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, collection(5, "value"));
+    context.create().resource(COLLECTION_PATH + "/item1/nested", "prop1", "nestedValue");
+    context.resourceResolver().commit();
+
+    underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, collection(3, "newValue"));
+
+    assertItems(3, "newValue");
+    assertNull(context.resourceResolver().getResource(COLLECTION_PATH + "/item3"));
+    assertThat(context.resourceResolver().getResource(COLLECTION_PATH + "/item1/nested"), ResourceMatchers.props("prop1", "nestedValue"));
+    assertNoWorkResources();
+  }
+
+  @Test
+  void testWriteChangedItemsOnly() throws PersistenceException {
+    underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, collection(5, "value"));
+    clearInvocations(resolver);
+
+    List<ConfigurationPersistData> items = new ArrayList<>(collection(5, "value").getItems());
+    items.set(1, item(1, "newValue"));
+    items.remove(4);
+    items.add(item(5, "value"));
+    underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, new ConfigurationCollectionPersistData(items));
+
+    // only the new item is staged, unchanged items are not touched
+    verify(resolver, times(1)).create(any(Resource.class), eq("item5"), anyMap());
+    verify(resolver, never()).create(any(Resource.class), eq("item0"), anyMap());
+    verify(resolver, never()).create(any(Resource.class), eq("item1"), anyMap());
+    verify(resolver, never()).move(eq(COLLECTION_PATH + "/item0"), any());
+
+    List<Resource> itemResources = IteratorUtils.toList(context.resourceResolver().getResource(COLLECTION_PATH).listChildren());
+    assertEquals(5, itemResources.size());
+    assertThat(itemResources.get(0), ResourceMatchers.nameAndProps("item0", "prop1", "value0"));
+    assertThat(itemResources.get(1), ResourceMatchers.nameAndProps("item1", "prop1", "newValue1"));
+    assertThat(itemResources.get(4), ResourceMatchers.nameAndProps("item5", "prop1", "value5"));
+    assertNull(context.resourceResolver().getResource(COLLECTION_PATH + "/item4"));
+    assertNoWorkResources();
+  }
+
+  @Test
+  void testStagedCollectionTakenOver() throws PersistenceException {
+    // simulate a concurrent write operation taking over the staged collection before swapping
+    doAnswer(invocation -> {
+      context.resourceResolver().getResource(STAGING_PATH).adaptTo(ModifiableValueMap.class)
+          .put(PROPERTY_WRITE_OWNER, "other-owner");
+      return null;
+    }).when(resolver).refresh();
+
+    ConfigurationCollectionPersistData data = collection(5, "value");
+    assertThrows(ConfigurationPersistenceException.class, () -> underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, data));
+    assertNull(context.resourceResolver().getResource(COLLECTION_PATH));
+  }
+
+  @Test
+  void testUnchangedCollection() throws PersistenceException {
+    underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, collection(5, "value"));
+    clearInvocations(resolver);
+
+    underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, collection(5, "value"));
+    verify(resolver, never()).commit();
+  }
+
+  @Test
+  void testResumeInterruptedWrite() throws PersistenceException {
+    underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, collection(2, "newValue"));
+
+    // fail after staging the second chunk of items
+    doThrow(new PersistenceException("create failed")).when(resolver).create(any(Resource.class), eq("item4"), anyMap());
+    ConfigurationCollectionPersistData data = collection(7, "newValue");
+    assertThrows(ConfigurationPersistenceException.class, () -> underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, data));
+
+    // existing collection is still intact, staged new items have progress marker
+    assertItems(2, "newValue");
+    Resource staging = context.resourceResolver().getResource(STAGING_PATH);
+    assertNotNull(staging);
+    assertEquals(4, staging.getValueMap().get(PROPERTY_WRITE_PROGRESS, 0));
+    assertEquals(List.of("item2", "item3"), childNames(STAGING_PATH));
+
+    // continue with remaining items
+    doCallRealMethod().when(resolver).create(any(Resource.class), eq("item4"), anyMap());
+    clearInvocations(resolver);
+    underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, data);
+
+    verify(resolver, never()).create(any(Resource.class), eq("item2"), anyMap());
+    verify(resolver, never()).create(any(Resource.class), eq("item3"), anyMap());
+    assertItems(7, "newValue");
+    assertNoWorkResources();
+  }
+
+  @Test
+  void testDiscardStagedCollectionWithOtherData() throws PersistenceException {
+    doThrow(new PersistenceException("create failed")).when(resolver).create(any(Resource.class), eq("item2"), anyMap());
+    ConfigurationCollectionPersistData data = collection(5, "value");
+    assertThrows(ConfigurationPersistenceException.class, () -> underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, data));
+    assertNull(context.resourceResolver().getResource(COLLECTION_PATH));
+
+    doCallRealMethod().when(resolver).create(any(Resource.class), eq("item2"), anyMap());
+    underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, collection(4, "otherValue"));
+
+    assertItems(4, "otherValue");
+    assertNoWorkResources();
+  }
+
+  @Test
+  void testPendingChanges() throws PersistenceException {
+    context.create().resource("/content/pending");
+    assertTrue(resolver.hasChanges());
+
+    ConfigurationCollectionPersistData data = collection(5, "value");
+    assertThrows(ConfigurationPersistenceException.class, () -> underTest.persistConfigurationCollection(resolver, COLLECTION_PATH, data));
+
+    // pending changes are neither committed nor reverted
+    verify(resolver, never()).commit();
+    assertTrue(resolver.hasChanges());
+    assertNull(context.resourceResolver().getResource(COLLECTION_PATH));
+  }
+
+  private void assertNoWorkResources() {
+    assertEquals(List.of("sling:configs"), childNames(CONFIG_PAGE_CONTENT));
+  }
+
+  private List<String> childNames(String path) {
+    List<String> names = new ArrayList<>();
+    context.resourceResolver().getResource(path).listChildren().forEachRemaining(child -> names.add(child.getName()));
+    return names;
+  }
+
+  private void assertItems(int count, String valuePrefix) {
+    Resource collectionParent = context.resourceResolver().getResource(COLLECTION_PATH);
+    assertNotNull(collectionParent);
+    List<Resource> items = IteratorUtils.toList(collectionParent.listChildren());
+    assertEquals(count, items.size());
+    for (int i = 0; i < count; i++) {
+      assertThat(items.get(i), ResourceMatchers.nameAndProps("item" + i, "prop1", valuePrefix + i));
+    }
+  }
+
+  private static ConfigurationCollectionPersistData collection(int count, String valuePrefix) {
+    List<ConfigurationPersistData> items = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      items.add(item(i, valuePrefix));
+    }
+    return new ConfigurationCollectionPersistData(items);
+  }
+
+  private static ConfigurationPersistData item(int index, String valuePrefix) {
+    return new ConfigurationPersistData(Map.of("prop1", valuePrefix + index)).collectionItemName("item" + index);
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static io.wcm.caconfig.extensions.persistence.testcontext.PersistenceTestUtils.writeConfiguration;
+import static org.apache.sling.testing.mock.caconfig.ContextPlugins.CACONFIG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.Objects;
+
+import org.apache.sling.caconfig.ConfigurationBuilder;
+import org.apache.sling.commons.metrics.Gauge;
+import org.apache.sling.commons.scheduler.ScheduleOptions;
+import org.apache.sling.commons.scheduler.Scheduler;
+import org.apache.sling.testing.mock.osgi.MockOsgi;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+
+import com.day.cq.wcm.api.Page;
+
+import io.wcm.caconfig.extensions.contextpath.impl.AbsoluteParentContextPathStrategy;
+import io.wcm.caconfig.extensions.persistence.example.SimpleConfig;
+import io.wcm.sling.commons.adapter.AdaptTo;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextBuilder;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+@ExtendWith(AemContextExtension.class)
+class ToolsConfigPagePersistenceStrategyWithConfigPageIndexTest {
+
+  private static final String METRICS_PREFIX = ToolsConfigPagePersistenceStrategy.class.getName() + ".configPageIndex";
+
+  final AemContext context = new AemContextBuilder()
+      .plugin(CACONFIG)
+      .build();
+
+  private Scheduler scheduler;
+  private ScheduleOptions scheduleOptions;
+  private Page contentPage;
+
+  @BeforeEach
+  void setUp() {
+    scheduler = mock(Scheduler.class);
+    scheduleOptions = mock(ScheduleOptions.class, RETURNS_SELF);
+    when(scheduler.NOW()).thenReturn(scheduleOptions);
+    context.registerService(Scheduler.class, scheduler);
+
+    context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
+        "levels", new int[] { 1, 3 },
+        "contextPathRegex", "^/content(/.+)$",
+        "configPathPatterns", new String[] { "/conf$1", "/content$1/tools/config/jcr:content" });
+
+    context.create().page("/content/region1");
+    context.create().page("/content/region1/site1");
+    context.create().page("/content/region1/site1/en");
+    contentPage = context.create().page("/content/region1/site1/en/page1");
+  }
+
+  @Test
+  void testBuildScheduled() throws InvalidSyntaxException {
+    ToolsConfigPagePersistenceStrategy underTest = context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(),
+        "enabled", true,
+        "configIndexEnabled", true);
+    writeConfiguration(context, contentPage.getPath(), SimpleConfig.class.getName(),
+        "stringParam", "value1");
+
+    // index is built via scheduler
+    ArgumentCaptor<Object> job = ArgumentCaptor.forClass(Object.class);
+    verify(scheduler).schedule(job.capture(), any(ScheduleOptions.class));
+    verify(scheduleOptions).name(METRICS_PREFIX);
+    verify(scheduleOptions).canRunConcurrently(false);
+    ((Runnable)job.getValue()).run();
+
+    assertEquals(1, getGauge("configPages").getValue());
+    assertTrue((Long)getGauge("estimatedHeapSize").getValue() > 0);
+    assertEquals("value1", readConfig().stringParam());
+
+    // scheduled build is cancelled and gauges are unregistered on deactivation
+    MockOsgi.deactivate(underTest, context.bundleContext());
+    verify(scheduler).unschedule(METRICS_PREFIX);
+    assertTrue(getGaugeReferences("configPages").isEmpty());
+  }
+
+  private Gauge<?> getGauge(String name) throws InvalidSyntaxException {
+    return context.bundleContext().getService(getGaugeReferences(name).iterator().next());
+  }
+
+  @SuppressWarnings("rawtypes")
+  private Collection<ServiceReference<Gauge>> getGaugeReferences(String name) throws InvalidSyntaxException {
+    return context.bundleContext().getServiceReferences(Gauge.class, "(" + Gauge.NAME + "=" + METRICS_PREFIX + "." + name + ")");
+  }
+
+  private SimpleConfig readConfig() {
+    return AdaptTo.notNull(Objects.requireNonNull(contentPage.getContentResource()), ConfigurationBuilder.class).as(SimpleConfig.class);
+  }
+
+}
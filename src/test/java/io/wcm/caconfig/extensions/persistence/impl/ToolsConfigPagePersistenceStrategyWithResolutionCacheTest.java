@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.persistence.impl;
+
+import static io.wcm.caconfig.extensions.persistence.testcontext.PersistenceTestUtils.writeConfiguration;
+import static org.apache.sling.testing.mock.caconfig.ContextPlugins.CACONFIG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.caconfig.ConfigurationBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.day.cq.wcm.api.Page;
+
+import io.wcm.caconfig.extensions.contextpath.impl.AbsoluteParentContextPathStrategy;
+import io.wcm.caconfig.extensions.persistence.example.SimpleConfig;
+import io.wcm.sling.commons.adapter.AdaptTo;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextBuilder;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+@ExtendWith(AemContextExtension.class)
+class ToolsConfigPagePersistenceStrategyWithResolutionCacheTest {
+
+  final AemContext context = new AemContextBuilder()
+      .plugin(CACONFIG)
+      .build();
+
+  private Page contentPage;
+  private ConfigResolutionCache resolutionCache;
+
+  @BeforeEach
+  void setUp() {
+    context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
+        "levels", new int[] { 1, 3 },
+        "contextPathRegex", "^/content(/.+)$",
+        "configPathPatterns", new String[] { "/conf$1", "/content$1/tools/config/jcr:content" });
+    context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(),
+        "enabled", true,
+        "resolutionCacheEnabled", true);
+    resolutionCache = Arrays.stream(context.getServices(ResourceChangeListener.class, null))
+        .filter(ConfigResolutionCache.class::isInstance)
+        .map(ConfigResolutionCache.class::cast)
+        .findFirst().orElseThrow();
+
+    context.create().page("/content/region1");
+    context.create().page("/content/region1/site1");
+    context.create().page("/content/region1/site1/en");
+    contentPage = context.create().page("/content/region1/site1/en/page1");
+  }
+
+  @Test
+  void testUncommittedDelete() throws PersistenceException {
+    writeConfiguration(context, contentPage.getPath(), SimpleConfig.class.getName(),
+        "stringParam", "value1");
+    assertEquals("value1", readConfig().stringParam());
+
+    // delete config without committing: missing resource must not be cached from uncommitted state
+    ResourceResolver resourceResolver = context.resourceResolver();
+    resourceResolver.delete(Objects.requireNonNull(resourceResolver.getResource(
+        "/content/region1/site1/en/tools/config/jcr:content/sling:configs/" + SimpleConfig.class.getName())));
+    assertNull(readConfig().stringParam());
+
+    // e.g. commit failed and changes are reverted
+    resourceResolver.revert();
+    assertEquals("value1", readConfig().stringParam());
+  }
+
+  @Test
+  void testReadWriteConfig() {
+    // read config: all lookups miss
+    SimpleConfig config = readConfig();
+    assertNull(config.stringParam());
+    long missCount = resolutionCache.getMissCount();
+
+    // read again: missing resources are known from cache
+    config = readConfig();
+    assertNull(config.stringParam());
+    assertEquals(missCount, resolutionCache.getMissCount());
+
+    // write config - cache is invalidated instantly
+    writeConfiguration(context, contentPage.getPath(), SimpleConfig.class.getName(),
+        "stringParam", "value1");
+    config = readConfig();
+    assertEquals("value1", config.stringParam());
+  }
+
+  private SimpleConfig readConfig() {
+    return AdaptTo.notNull(Objects.requireNonNull(contentPage.getContentResource()), ConfigurationBuilder.class).as(SimpleConfig.class);
+  }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2026 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caconfig.extensions.references.impl;
+
+import static io.wcm.caconfig.extensions.references.impl.TestUtils.applyConfig;
+import static io.wcm.caconfig.extensions.references.impl.TestUtils.assertReferences;
+import static io.wcm.caconfig.extensions.references.impl.TestUtils.registerConfigurations;
+import static org.apache.sling.testing.mock.caconfig.ContextPlugins.CACONFIG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.caconfig.management.multiplexer.ConfigurationResourceResolvingStrategyMultiplexer;
+import org.apache.sling.caconfig.resource.spi.ConfigurationResourceResolvingStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.osgi.framework.Constants;
+
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.reference.Reference;
+import com.day.cq.wcm.api.reference.ReferenceProvider;
+
+import io.wcm.caconfig.extensions.contextpath.impl.AbsoluteParentContextPathStrategy;
+import io.wcm.caconfig.extensions.persistence.impl.ToolsConfigPagePersistenceStrategy;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextBuilder;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+
+/**
+ * Test the {@link ConfigurationReferenceProvider} with the {@link ToolsConfigPagePersistenceStrategy}.
+ */
+@ExtendWith(AemContextExtension.class)
+class ConfigurationReferenceProvider_ToolsConfigPagePersistenceStrategyTest {
+
+  private final AemContext context = new AemContextBuilder()
+      .plugin(CACONFIG)
+      .build();
+
+  private static final ValueMap CONFIGURATION_A = new ValueMapDecorator(Map.of("key", "foo"));
+  private static final ValueMap CONFIGURATION_B = new ValueMapDecorator(Map.of("key", "bar"));
+
+  private Resource site1PageResource;
+  private Resource site2PageResource;
+
+  @BeforeEach
+  void setup() {
+    context.registerInjectActivateService(new AbsoluteParentContextPathStrategy(),
+        "levels", new int[] { 1, 2 },
+        "contextPathRegex", "^/content(/.+)$",
+        "configPathPatterns", new String[] { "/conf$1", "/content$1/tools/config/jcr:content" });
+    context.registerInjectActivateService(new ToolsConfigPagePersistenceStrategy(), "enabled", true);
+
+    Page region1Page = context.create().page("/content/region1");
+    Page site1Page = context.create().page("/content/region1/site1");
+    Page site2Page = context.create().page("/content/region1/site2");
+
+    site1PageResource = site1Page.adaptTo(Resource.class);
+    site2PageResource = site2Page.adaptTo(Resource.class);
+
+    registerConfigurations(context, ConfigurationA.class, ConfigurationB.class);
+
+    applyConfig(context, region1Page, "configA", CONFIGURATION_A);
+    applyConfig(context, site2Page, "configA", CONFIGURATION_A);
+    applyConfig(context, site2Page, "configB", CONFIGURATION_B);
+  }
+
+  @Test
+  void testReferencesOfSite1() {
+    ReferenceProvider referenceProvider = new ConfigurationReferenceProvider();
+    context.registerInjectActivateService(referenceProvider);
+    List<Reference> references = referenceProvider.findReferences(site1PageResource);
+    assertReferences(references,
+        "/content/region1/tools/config");
+  }
+
+  @Test
+  void testReferencesOfSite2() {
+    ReferenceProvider referenceProvider = new ConfigurationReferenceProvider();
+    context.registerInjectActivateService(referenceProvider);
+    List<Reference> references = referenceProvider.findReferences(site2PageResource);
+    assertReferences(references,
+        "/content/region1/site2/tools/config",
+        "/content/region1/tools/config",
+        "/content/region1/site2/tools/config");
+  }
+
+  @Test
+  void testReferencesOfSite2_BatchResolution() {
+    ConfigurationResourceResolvingStrategyMultiplexer multiplexer = mock(ConfigurationResourceResolvingStrategyMultiplexer.class,
+        delegatesTo(context.getService(ConfigurationResourceResolvingStrategyMultiplexer.class)));
+    context.registerService(ConfigurationResourceResolvingStrategyMultiplexer.class, multiplexer,
+        Constants.SERVICE_RANKING, Integer.MAX_VALUE);
+    ReferenceProvider referenceProvider = new ConfigurationReferenceProvider();
+    context.registerInjectActivateService(referenceProvider);
+
+    // all configuration names are resolved in a single pass by the top-ranked tools config page strategy
+    List<Reference> batchReferences = referenceProvider.findReferences(site2PageResource);
+    verify(multiplexer, never()).getResourceInheritanceChain(any(Resource.class), anyCollection(), anyString());
+
+    // configuration names not found in the batch are not looked up again
+    assertReferences(referenceProvider.findReferences(site1PageResource),
+        "/content/region1/tools/config");
+    verify(multiplexer, never()).getResourceInheritanceChain(any(Resource.class), anyCollection(), anyString());
+
+    // each configuration name is resolved via the multiplexer if another strategy has a higher ranking
+    ConfigurationResourceResolvingStrategy otherStrategy = mock(ConfigurationResourceResolvingStrategy.class);
+    context.registerService(ConfigurationResourceResolvingStrategy.class, otherStrategy, Constants.SERVICE_RANKING, 3000);
+    List<Reference> references = referenceProvider.findReferences(site2PageResource);
+    verify(multiplexer, times(2)).getResourceInheritanceChain(any(Resource.class), anyCollection(), anyString());
+    verify(otherStrategy, times(2)).getResourceInheritanceChain(any(Resource.class), anyCollection(), anyString());
+
+    // both give the same result
+    assertEquals(toPaths(references), toPaths(batchReferences));
+    assertReferences(batchReferences,
+        "/content/region1/site2/tools/config",
+        "/content/region1/tools/config",
+        "/content/region1/site2/tools/config");
+  }
+
+  private static List<String> toPaths(List<Reference> references) {
+    return references.stream()
+        .map(reference -> reference.getResource().getPath())
+        .collect(Collectors.toList());
+  }
+
+}